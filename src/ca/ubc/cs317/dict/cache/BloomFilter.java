@@ -0,0 +1,81 @@
+package ca.ubc.cs317.dict.cache;
+
+/**
+ * Compact set of strings that can answer "definitely not present" exactly, and "present" with a tunable rate of false
+ * positives. The bit array is sized for the expected number of strings and the wanted false positive rate, unless
+ * that exceeds the memory budget, in which case the budget is used and the rate is correspondingly higher.
+ *
+ * Strings are hashed once into 64 bits, and the probe positions are derived from the two halves of the hash by double
+ * hashing. A filter is filled once and then only read; reads may happen from any thread once it has been published.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private int size;
+
+    /** Creates an empty filter.
+     *
+     * @param expectedSize The number of strings that will be added.
+     * @param falsePositiveRate The wanted probability that an absent string is reported as present, e.g. 0.01.
+     * @param maxBytes The most memory the bit array may use.
+     */
+    public BloomFilter(int expectedSize, double falsePositiveRate, long maxBytes) {
+        int n = Math.max(1, expectedSize);
+        double optimalBits = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long maxBits = Math.min(Math.max(64, maxBytes * 8), (long) Integer.MAX_VALUE * 64);
+        this.bitCount = (long) Math.min(Math.max(64, Math.ceil(optimalBits)), maxBits) / 64 * 64;
+        this.bits = new long[(int) (bitCount / 64)];
+        this.hashCount = (int) Math.max(1, Math.min(16, Math.round((double) bitCount / n * Math.log(2))));
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        size++;
+    }
+
+    /** Returns false if the value was definitely never added, and true if it probably was. */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /** Returns the false positive rate expected for the strings added so far, which is above the requested rate if
+     * the memory budget made the filter smaller than optimal.
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) size / bitCount), hashCount);
+    }
+
+    /** Returns the memory used by the bit array, in bytes. */
+    public long sizeInBytes() {
+        return bitCount / 8;
+    }
+
+    /** 64-bit FNV-1a over the characters, followed by a final mix so that both halves are usable as hashes. */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,54 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Definition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the cross-references in definition bodies. The GCIDE, WordNet and FOLDOC databases mark related headwords by
+ * enclosing them in braces, as in "see {apple}". A reference may be wrapped across lines, so runs of whitespace inside
+ * the braces are collapsed to a single space.
+ */
+public class CrossReferences {
+
+    /** Longer text between braces is taken to be an unbalanced brace rather than a headword. */
+    private static final int MAX_REFERENCE_LENGTH = 80;
+
+    private CrossReferences() {
+    }
+
+    /** Returns the distinct words referred to by a definition, in the order they first appear in its body.
+     *
+     * @param definition The definition to be scanned.
+     * @return The referenced words, possibly none.
+     */
+    public static List<String> extract(Definition definition) {
+        String body = definition.getDefinition();
+        if (body == null)
+            return List.of();
+
+        Set<String> references = new LinkedHashSet<>();
+        int open = body.indexOf('{');
+        while (open >= 0) {
+            int close = body.indexOf('}', open + 1);
+            if (close < 0)
+                break;
+            // An opening brace without its own closing brace is skipped, and scanning resumes at the next one
+            int next = body.indexOf('{', open + 1);
+            if (next >= 0 && next < close) {
+                open = next;
+                continue;
+            }
+            if (close - open - 1 <= MAX_REFERENCE_LENGTH) {
+                String reference = body.substring(open + 1, close).trim().replaceAll("\\s+", " ");
+                if (!reference.isEmpty())
+                    references.add(reference);
+            }
+            open = body.indexOf('{', close + 1);
+        }
+        return new ArrayList<>(references);
+    }
+}
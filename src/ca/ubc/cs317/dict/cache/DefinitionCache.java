@@ -0,0 +1,87 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small, short-lived cache of DEFINE results, keyed by word and database. Entries expire after a fixed time, so the
+ * cache never serves definitions much older than a fresh request would, and the least recently used entries are
+ * evicted once the cache is full. All methods are thread-safe.
+ */
+public class DefinitionCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    /** Creates an empty cache.
+     *
+     * @param maxEntries The maximum number of results kept.
+     * @param ttlMillis The time after which a result is no longer returned, in milliseconds.
+     */
+    public DefinitionCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DefinitionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Returns the cached definitions of a word, or null if there are none or they have expired.
+     *
+     * @param word The word as it was requested.
+     * @param database The database the word was requested from.
+     */
+    public synchronized List<Definition> get(String word, Database database) {
+        String key = key(word, database);
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (System.currentTimeMillis() >= entry.expires) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.definitions;
+    }
+
+    /** Stores the definitions of a word, replacing any previous result.
+     *
+     * @param word The word as it was requested.
+     * @param database The database the word was requested from.
+     * @param definitions The definitions returned by the server, possibly none.
+     */
+    public synchronized void put(String word, Database database, Collection<Definition> definitions) {
+        entries.put(key(word, database), new Entry(List.copyOf(definitions), System.currentTimeMillis() + ttlMillis));
+    }
+
+    /** Returns true if an unexpired result for the word is cached. */
+    public boolean contains(String word, Database database) {
+        return get(word, database) != null;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    static String key(String word, Database database) {
+        return database.getName() + '\0' + word;
+    }
+
+    private static class Entry {
+        private final List<Definition> definitions;
+        private final long expires;
+
+        Entry(List<Definition> definitions, long expires) {
+            this.definitions = definitions;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.net.DictConnectionException;
+
+import java.util.Collection;
+
+/**
+ * Anything able to answer a DEFINE request, such as a connection or a connection pool.
+ */
+public interface DefinitionSource {
+
+    Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException;
+}
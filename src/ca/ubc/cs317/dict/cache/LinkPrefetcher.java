@@ -0,0 +1,123 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.net.DictConnectionException;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the definitions of the words a page of definitions refers to, so that following one of its
+ * {@link CrossReferences cross-references} is answered from the cache. References are looked up in the database of
+ * the definition they appear in, since that is where they point to.
+ *
+ * References found in prefetched definitions are followed in turn, up to a maximum depth, breadth first: all
+ * references of the shown page are fetched before any of theirs. Each page has a budget of requests shared by all
+ * depths. Requests run one at a time on a single low-priority thread, and showing a new page or calling
+ * {@link #cancel()} drops every queued request of the previous one. A request that was already sent is allowed to
+ * finish, so its connection is left with the reply fully read.
+ */
+public class LinkPrefetcher {
+
+    private final DefinitionSource source;
+    private final DefinitionCache cache;
+    private final int maxDepth;
+    private final int budget;
+    private final ExecutorService executor;
+    private final AtomicInteger currentPage = new AtomicInteger();
+
+    /** Creates a prefetcher.
+     *
+     * @param source Where the definitions are requested from.
+     * @param cache Where the definitions are stored.
+     * @param maxDepth The number of links followed away from the shown page; 1 only fetches its own references.
+     * @param budget The maximum number of words fetched per page, at all depths together.
+     */
+    public LinkPrefetcher(DefinitionSource source, DefinitionCache cache, int maxDepth, int budget) {
+        this.source = source;
+        this.cache = cache;
+        this.maxDepth = maxDepth;
+        this.budget = budget;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "dict-links");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /** Replaces the page whose references are prefetched. Returns immediately.
+     *
+     * @param definitions The definitions shown.
+     */
+    public void follow(Collection<Definition> definitions) {
+        if (executor.isShutdown())
+            return;
+        queueReferences(definitions, 1, new Page(currentPage.incrementAndGet(), budget));
+    }
+
+    private void queueReferences(Collection<Definition> definitions, int depth, Page page) {
+        if (depth > maxDepth)
+            return;
+        for (Definition definition : definitions) {
+            Database database = new Database(definition.getDatabaseName(), "");
+            for (String word : CrossReferences.extract(definition)) {
+                if (!page.isCurrent() || page.remaining.get() <= 0)
+                    return;
+                // Entries often refer to themselves, e.g. in their list of synonyms
+                if (word.equalsIgnoreCase(definition.getWord()) || cache.contains(word, database)
+                        || !page.queued.add(DefinitionCache.key(word, database)))
+                    continue;
+                if (page.remaining.getAndDecrement() <= 0)
+                    return;
+                executor.execute(() -> {
+                    try {
+                        // A request still running for an earlier page may have fetched the word in the meantime
+                        if (!page.isCurrent() || cache.contains(word, database))
+                            return;
+                        Collection<Definition> found = source.getDefinitions(word, database);
+                        cache.put(word, database, found);
+                        queueReferences(found, depth + 1, page);
+                    } catch (DictConnectionException e) {
+                        // Prefetching is best effort; following the link will report the problem
+                    }
+                });
+            }
+        }
+    }
+
+    /** Drops all queued requests, as when the page they were based on is no longer shown.
+     */
+    public void cancel() {
+        currentPage.incrementAndGet();
+    }
+
+    /** Drops all queued requests and stops the prefetching thread.
+     */
+    public void close() {
+        cancel();
+        executor.shutdown();
+    }
+
+    /** The requests made on behalf of one shown page, queued from the calling thread for the page's own references
+     * and from the prefetching thread for theirs. */
+    private class Page {
+        private final int id;
+        private final Set<String> queued = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger remaining;
+
+        Page(int id, int budget) {
+            this.id = id;
+            this.remaining = new AtomicInteger(budget);
+        }
+
+        boolean isCurrent() {
+            return currentPage.get() == id;
+        }
+    }
+}
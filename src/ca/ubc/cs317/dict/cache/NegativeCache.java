@@ -0,0 +1,183 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers lookups that found nothing, so that repeating them, as happens with common misspellings, doesn't cost a
+ * round trip. Two sources are used:
+ *
+ * <ul>
+ * <li>Recent empty replies to DEFINE and MATCH, kept for a fixed time in a bounded least-recently-used map. An empty
+ * prefix MATCH also answers longer prefixes of the same word.</li>
+ * <li>A {@link BloomFilter} of a database's headwords, when they are known. A word the filter rejects has no
+ * definition in that database, nor an exact match. Filters only exist for single databases; "*" and "!" lookups use
+ * recent replies only.</li>
+ * </ul>
+ *
+ * Recent replies are keyed by the query as sent, ignoring only case: how the server compares other characters depends
+ * on the strategy and on how the database was built, so two queries that differ in more than case may well have
+ * different answers. The filter holds headwords normalized the way dictd compares them by default, ignoring case and
+ * anything but letters and digits. Normalizing can only merge headwords, never separate them, so a word the filter
+ * rejects in normalized form has no headword under any other comparison either. All methods are thread-safe.
+ */
+public class NegativeCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final double falsePositiveRate;
+    private final long maxFilterBytes;
+    private final long filterMaxAgeMillis;
+    private final Map<String, Long> misses;
+    private final Map<Database, Filter> filters = new ConcurrentHashMap<>();
+
+    /** Creates an empty cache.
+     *
+     * @param maxEntries The maximum number of empty replies remembered.
+     * @param ttlMillis The time an empty reply is remembered, in milliseconds.
+     * @param falsePositiveRate The wanted rate at which headword filters let an absent word through to the server.
+     * @param maxFilterBytes The most memory each database's headword filter may use.
+     * @param filterMaxAgeMillis The time after which a headword filter is no longer trusted, since the database may
+     *                           have gained headwords.
+     */
+    public NegativeCache(int maxEntries, long ttlMillis, double falsePositiveRate, long maxFilterBytes,
+                         long filterMaxAgeMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxFilterBytes = maxFilterBytes;
+        this.filterMaxAgeMillis = filterMaxAgeMillis;
+        this.misses = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > NegativeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Returns true if a DEFINE for the word is known to return no definitions.
+     *
+     * @param word The word as it would be requested.
+     * @param database The database it would be requested from.
+     */
+    public boolean isDefineAbsent(String word, Database database) {
+        return isFilteredOut(normalize(word), database) || isRecentMiss("DEFINE", database, fold(word));
+    }
+
+    /** Records that a DEFINE returned no definitions. */
+    public void recordDefineMiss(String word, Database database) {
+        recordMiss("DEFINE", database, fold(word));
+    }
+
+    /** Returns true if a MATCH for the word is known to return no matches.
+     *
+     * @param word The word as it would be requested.
+     * @param strategy The matching strategy.
+     * @param database The database it would be requested from.
+     */
+    public boolean isMatchAbsent(String word, MatchingStrategy strategy, Database database) {
+        String folded = fold(word);
+        String type = "MATCH " + strategy.getName();
+        if (strategy.getName().equals("exact") && isFilteredOut(normalize(word), database))
+            return true;
+        if (!strategy.getName().equals("prefix"))
+            return isRecentMiss(type, database, folded);
+        // No headword starts with a longer prefix if none starts with a shorter one
+        for (int length = folded.length(); length > 0; length--) {
+            if (isRecentMiss(type, database, folded.substring(0, length)))
+                return true;
+        }
+        return false;
+    }
+
+    /** Records that a MATCH returned no matches. */
+    public void recordMatchMiss(String word, MatchingStrategy strategy, Database database) {
+        recordMiss("MATCH " + strategy.getName(), database, fold(word));
+    }
+
+    /** Builds the headword filter of a database, replacing any previous one. This takes time proportional to the
+     * number of headwords, so it should not be called on the event dispatch thread.
+     *
+     * @param database The database the headwords belong to.
+     * @param headwords All headwords of the database.
+     */
+    public void loadHeadwords(Database database, Collection<String> headwords) {
+        BloomFilter filter = new BloomFilter(headwords.size(), falsePositiveRate, maxFilterBytes);
+        for (String headword : headwords) {
+            String normalized = normalize(headword);
+            if (!normalized.isEmpty())
+                filter.add(normalized);
+        }
+        filters.put(database, new Filter(filter, System.currentTimeMillis() + filterMaxAgeMillis));
+    }
+
+    /** Returns true if the database has a headword filter that can still be trusted. */
+    public boolean hasHeadwords(Database database) {
+        Filter filter = filters.get(database);
+        return filter != null && System.currentTimeMillis() < filter.expires;
+    }
+
+    public synchronized void clear() {
+        misses.clear();
+        filters.clear();
+    }
+
+    private boolean isFilteredOut(String normalized, Database database) {
+        // A word with no letters or digits can't be normalized, so its absence says nothing
+        if (normalized.isEmpty() || !hasHeadwords(database))
+            return false;
+        return !filters.get(database).filter.mightContain(normalized);
+    }
+
+    private synchronized boolean isRecentMiss(String type, Database database, String folded) {
+        String key = key(type, database, folded);
+        Long expires = misses.get(key);
+        if (expires == null)
+            return false;
+        if (System.currentTimeMillis() >= expires) {
+            misses.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized void recordMiss(String type, Database database, String folded) {
+        if (!folded.isEmpty())
+            misses.put(key(type, database, folded), System.currentTimeMillis() + ttlMillis);
+    }
+
+    private static String key(String type, Database database, String folded) {
+        return type + '\0' + database.getName() + '\0' + folded;
+    }
+
+    /** The query as sent, ignoring case, which is how recent misses are keyed. */
+    private static String fold(String word) {
+        return word.toLowerCase(Locale.ROOT);
+    }
+
+    static String normalize(String word) {
+        StringBuilder normalized = new StringBuilder(word.length());
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (Character.isLetterOrDigit(c))
+                normalized.append(c);
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Filter {
+        private final BloomFilter filter;
+        private final long expires;
+
+        Filter(BloomFilter filter, long expires) {
+            this.filter = filter;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.net.DictConnectionException;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Speculatively fetches the definitions of words the user is likely to look up next, such as the first entries of a
+ * suggestion list, and stores them in a cache so the lookup itself needs no round trip.
+ *
+ * Prefetching is kept from competing with interactive requests: requests run one at a time on a single low-priority
+ * thread, each batch is limited to a fixed number of words, and words already cached are skipped. A new batch or a
+ * call to {@link #cancel()} drops every queued request for a word that is no longer wanted. A request that was
+ * already sent is allowed to finish, so its connection is left with the reply fully read.
+ */
+public class Prefetcher {
+
+    private final DefinitionSource source;
+    private final DefinitionCache cache;
+    private final int budget;
+    private final ExecutorService executor;
+
+    // Keys of words queued or being fetched, so a word is never requested twice at the same time
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> wanted = Collections.emptySet();
+
+    /** Creates a prefetcher.
+     *
+     * @param source Where the definitions are requested from.
+     * @param cache Where the definitions are stored.
+     * @param budget The maximum number of words fetched per batch.
+     */
+    public Prefetcher(DefinitionSource source, DefinitionCache cache, int budget) {
+        this.source = source;
+        this.cache = cache;
+        this.budget = budget;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "dict-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /** Replaces the words to be prefetched. Only the first words of the list, up to the budget, are fetched, in order.
+     * Returns immediately.
+     *
+     * @param words Candidate words, most likely first.
+     * @param database The database the words would be looked up in.
+     */
+    public void prefetch(List<String> words, Database database) {
+        List<String> top = words.subList(0, Math.min(budget, words.size()));
+        Set<String> keys = new HashSet<>();
+        for (String word : top)
+            keys.add(DefinitionCache.key(word, database));
+        wanted = keys;
+
+        for (String word : top) {
+            String key = DefinitionCache.key(word, database);
+            if (cache.contains(word, database) || !pending.add(key))
+                continue;
+            executor.execute(() -> {
+                try {
+                    if (wanted.contains(key) && !cache.contains(word, database))
+                        cache.put(word, database, source.getDefinitions(word, database));
+                } catch (DictConnectionException e) {
+                    // Prefetching is best effort; the lookup itself will report the problem
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        }
+    }
+
+    /** Drops all queued requests, as when the input they were based on has changed.
+     */
+    public void cancel() {
+        wanted = Collections.emptySet();
+    }
+
+    /** Drops all queued requests and stops the prefetching thread.
+     */
+    public void close() {
+        cancel();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,377 @@
+package ca.ubc.cs317.dict.cli;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import ca.ubc.cs317.dict.net.ConnectionPool;
+import ca.ubc.cs317.dict.net.DictConnectionException;
+import ca.ubc.cs317.dict.net.DictionaryConnection;
+import ca.ubc.cs317.dict.net.FederatedClient;
+import ca.ubc.cs317.dict.net.ReplyText;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Command-line client for scripts, which runs one command on a single {@link DictionaryConnection} and prints the
+ * reply. Nothing here refers to Swing or AWT, so none of the GUI classes are loaded.
+ *
+ * <pre>
+ * DictionaryCli [--server host[:port][,...]] [--timings] define word [database]
+ * DictionaryCli [--server host[:port]] [--timings] match word [strategy [database]]
+ * DictionaryCli [--server host[:port]] [--timings] show db | show strat | show info database
+ * </pre>
+ *
+ * Several comma-separated servers are searched as one through a {@link FederatedClient}, with database names qualified
+ * by their server, as in "wn@dict.org".
+ *
+ * The exit status is 0 if something was found, 1 if the server found nothing, 2 for a usage error and 3 if the server
+ * could not be reached or sent an unexpected reply. With --timings, the time spent connecting, running the query, and
+ * from entering main to the first line of output is written to standard error; the JVM's own startup comes on top.
+ *
+ * Most of a cold start is spent loading and linking classes. A class-data-sharing archive made by a training run
+ * removes most of that cost, and skipping the optimizing compiler helps a process this short-lived. Archives can only
+ * hold classes loaded from JAR files, so the compiled classes are packaged first:
+ *
+ * <pre>
+ * jar cf dict.jar -C out .
+ * java -XX:ArchiveClassesAtExit=dict-cli.jsa -cp dict.jar ca.ubc.cs317.dict.cli.DictionaryCli define test
+ * java -XX:SharedArchiveFile=dict-cli.jsa -XX:TieredStopAtLevel=1 -cp dict.jar ca.ubc.cs317.dict.cli.DictionaryCli ...
+ * </pre>
+ *
+ * The archive is only used with the same JVM and JAR it was created with; otherwise the JVM silently starts without
+ * it.
+ */
+public class DictionaryCli {
+
+    private static final String DEFAULT_SERVER = "dict.org";
+    private static final int DEFAULT_PORT = 2628;
+    private static final int FEDERATED_CONNECTIONS = 2;
+    private static final String USAGE = "Usage: DictionaryCli [--server host[:port][,...]] [--timings] command\n" +
+            "  define word [database]\n" +
+            "  match word [strategy [database]]\n" +
+            "  show db | show strat | show info database\n";
+
+    private static final int FOUND = 0;
+    private static final int NOT_FOUND = 1;
+    private static final int USAGE_ERROR = 2;
+    private static final int CONNECTION_ERROR = 3;
+
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+    private final boolean timings;
+    private final long started;
+    private long firstOutput;
+
+    private DictionaryCli(boolean timings, long started) {
+        this.timings = timings;
+        this.started = started;
+    }
+
+    public static void main(String[] args) {
+        long started = System.nanoTime();
+        String server = DEFAULT_SERVER;
+        boolean timings = false;
+        int next = 0;
+        for (; next < args.length && args[next].startsWith("--"); next++) {
+            if (args[next].equals("--timings"))
+                timings = true;
+            else if (args[next].equals("--server") && next + 1 < args.length)
+                server = args[++next];
+            else
+                usage();
+        }
+        if (next >= args.length)
+            usage();
+
+        System.exit(new DictionaryCli(timings, started).run(server.split(","), args, next));
+    }
+
+    private int run(String[] servers, String[] args, int start) {
+        String command = args[start];
+        int count = args.length - start;
+        if (!isValid(command, count, count > 1 ? args[start + 1] : null))
+            usage();
+
+        long connectStart = System.nanoTime();
+        Server connection;
+        try {
+            connection = servers.length == 1 ? connect(servers[0]) : federate(servers);
+        } catch (DictConnectionException e) {
+            System.err.println("Error: " + e.getMessage());
+            return CONNECTION_ERROR;
+        }
+        timing("connect", System.nanoTime() - connectStart);
+
+        long queryStart = System.nanoTime();
+        try {
+            switch (command) {
+                case "define":
+                    return define(connection, args[start + 1], database(count > 2 ? args[start + 2] : "*"));
+                case "match":
+                    return match(connection, args[start + 1],
+                            new MatchingStrategy(count > 2 ? args[start + 2] : ".", ""),
+                            database(count > 3 ? args[start + 3] : "*"));
+                default:
+                    if (args[start + 1].equals("db"))
+                        return showDatabases(connection);
+                    if (args[start + 1].equals("strat"))
+                        return showStrategies(connection);
+                    return showInfo(connection, database(args[start + 2]));
+            }
+        } catch (DictConnectionException e) {
+            out.flush();
+            System.err.println("Error: " + e.getMessage());
+            return CONNECTION_ERROR;
+        } catch (UncheckedIOException e) {
+            System.err.println("Error writing output: " + e.getCause().getMessage());
+            return CONNECTION_ERROR;
+        } finally {
+            out.flush();
+            timing("query", System.nanoTime() - queryStart);
+            if (timings && firstOutput != 0)
+                timing("first output", firstOutput - started);
+            connection.close();
+        }
+    }
+
+    /** Opens a single connection; the federated client's pools and threads are only loaded for several servers. */
+    private static Server connect(String server) throws DictConnectionException {
+        DictionaryConnection connection = new DictionaryConnection(host(server), port(server));
+        return new Server() {
+            @Override
+            public void getDefinitions(String word, Database database, Consumer<Definition> consumer)
+                    throws DictConnectionException {
+                connection.getDefinitions(word, database, consumer);
+            }
+
+            @Override
+            public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database)
+                    throws DictConnectionException {
+                return connection.getMatchList(word, strategy, database);
+            }
+
+            @Override
+            public Map<String, Database> getDatabaseList() throws DictConnectionException {
+                return connection.getDatabaseList();
+            }
+
+            @Override
+            public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+                return connection.getStrategyList();
+            }
+
+            @Override
+            public CharSequence getDatabaseInfo(Database database) throws DictConnectionException {
+                return connection.getDatabaseInfoText(database);
+            }
+
+            @Override
+            public void close() {
+                connection.close();
+            }
+        };
+    }
+
+    /** Searches several servers as one, with database names qualified by server, as in "wn@dict.org". */
+    private static Server federate(String[] servers) {
+        List<ConnectionPool> pools = new ArrayList<>();
+        for (String server : servers)
+            pools.add(new ConnectionPool(host(server), port(server), FEDERATED_CONNECTIONS));
+        FederatedClient client = new FederatedClient(pools);
+        return new Server() {
+            @Override
+            public void getDefinitions(String word, Database database, Consumer<Definition> consumer)
+                    throws DictConnectionException {
+                client.getDefinitions(word, database, consumer);
+            }
+
+            @Override
+            public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database)
+                    throws DictConnectionException {
+                return client.getMatchList(word, strategy, database, Integer.MAX_VALUE);
+            }
+
+            @Override
+            public Map<String, Database> getDatabaseList() throws DictConnectionException {
+                return client.getDatabaseList();
+            }
+
+            @Override
+            public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+                return client.getStrategyList();
+            }
+
+            @Override
+            public CharSequence getDatabaseInfo(Database database) throws DictConnectionException {
+                return client.getDatabaseInfo(database);
+            }
+
+            @Override
+            public void close() {
+                client.close();
+            }
+        };
+    }
+
+    private static String host(String server) {
+        int colon = server.lastIndexOf(':');
+        return colon >= 0 ? server.substring(0, colon) : server;
+    }
+
+    private static int port(String server) {
+        int colon = server.lastIndexOf(':');
+        if (colon < 0)
+            return DEFAULT_PORT;
+        try {
+            return Integer.parseInt(server.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            usage();
+            return DEFAULT_PORT;
+        }
+    }
+
+    private static boolean isValid(String command, int count, String argument) {
+        switch (command) {
+            case "define":
+                return count == 2 || count == 3;
+            case "match":
+                return count >= 2 && count <= 4;
+            case "show":
+                return count == 2 && (argument.equals("db") || argument.equals("strat"))
+                        || count == 3 && argument.equals("info");
+            default:
+                return false;
+        }
+    }
+
+    private int define(Server connection, String word, Database database) throws DictConnectionException {
+        int[] found = new int[1];
+        // Each definition is printed as soon as it is complete, so the first one shows while the rest still arrive
+        connection.getDefinitions(word, database, definition -> {
+            if (found[0]++ > 0)
+                out.println();
+            printDefinition(definition);
+        });
+        if (found[0] == 0) {
+            System.err.println("No definitions found for \"" + word + "\"");
+            return NOT_FOUND;
+        }
+        return FOUND;
+    }
+
+    private void printDefinition(Definition definition) {
+        write("From " + definition.getDatabaseName() + ":");
+        out.println();
+        String body = definition.getDefinition();
+        if (body != null) {
+            out.print(body);
+            if (!body.endsWith("\n"))
+                out.println();
+        }
+        if (definition.isTruncated())
+            out.println("[...]");
+        out.flush();
+    }
+
+    private int match(Server connection, String word, MatchingStrategy strategy, Database database)
+            throws DictConnectionException {
+        Set<String> matches = connection.getMatchList(word, strategy, database);
+        for (String match : matches)
+            write(match);
+        if (matches.isEmpty()) {
+            System.err.println("No matches found for \"" + word + "\"");
+            return NOT_FOUND;
+        }
+        return FOUND;
+    }
+
+    private int showDatabases(Server connection) throws DictConnectionException {
+        Map<String, Database> databases = connection.getDatabaseList();
+        for (Database database : databases.values())
+            write(database.getName() + "\t" + database.getDescription());
+        return databases.isEmpty() ? NOT_FOUND : FOUND;
+    }
+
+    private int showStrategies(Server connection) throws DictConnectionException {
+        Collection<MatchingStrategy> strategies = connection.getStrategyList();
+        for (MatchingStrategy strategy : strategies)
+            write(strategy.getName() + "\t" + strategy.getDescription());
+        return strategies.isEmpty() ? NOT_FOUND : FOUND;
+    }
+
+    private int showInfo(Server connection, Database database) throws DictConnectionException {
+        CharSequence info = connection.getDatabaseInfo(database);
+        // Copied through a reader, so text spilled to disk is never held in memory as a whole
+        Reader source = info instanceof ReplyText ? ((ReplyText) info).openReader() : new StringReader(info.toString());
+        try (Reader reader = source) {
+            char[] buffer = new char[8192];
+            char last = '\n';
+            for (int count; (count = reader.read(buffer)) > 0; ) {
+                markOutput();
+                out.write(buffer, 0, count);
+                last = buffer[count - 1];
+            }
+            if (last != '\n')
+                out.println();
+        } catch (IOException e) {
+            throw new DictConnectionException("Error reading database information", e);
+        }
+        if (info instanceof ReplyText && ((ReplyText) info).isTruncated())
+            write("[...]");
+        return FOUND;
+    }
+
+    private void write(String line) {
+        markOutput();
+        out.println(line);
+        if (out.checkError())
+            throw new UncheckedIOException(new IOException("Standard output closed"));
+    }
+
+    private void markOutput() {
+        if (firstOutput == 0)
+            firstOutput = System.nanoTime();
+    }
+
+    private void timing(String phase, long nanos) {
+        if (timings)
+            System.err.println(phase + ": " + nanos / 1000 / 1000.0 + " ms");
+    }
+
+    private static Database database(String name) {
+        return new Database(name, "");
+    }
+
+    /** The commands the client runs, on a single server or on several at once. */
+    private interface Server {
+        void getDefinitions(String word, Database database, Consumer<Definition> consumer)
+                throws DictConnectionException;
+
+        Set<String> getMatchList(String word, MatchingStrategy strategy, Database database)
+                throws DictConnectionException;
+
+        Map<String, Database> getDatabaseList() throws DictConnectionException;
+
+        Set<MatchingStrategy> getStrategyList() throws DictConnectionException;
+
+        CharSequence getDatabaseInfo(Database database) throws DictConnectionException;
+
+        void close();
+    }
+
+    private static void usage() {
+        System.err.print(USAGE);
+        System.exit(USAGE_ERROR);
+    }
+}
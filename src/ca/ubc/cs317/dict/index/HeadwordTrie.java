@@ -0,0 +1,324 @@
+package ca.ubc.cs317.dict.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compact trie over a set of headwords. Nodes are stored in parallel tables (label, first child, next sibling and a
+ * terminal flag) in depth-first order, so the structure costs a few bytes per node and needs no objects per word. The
+ * tables can be written to a file and memory-mapped back, in which case lookups read the mapped pages directly and
+ * opening the file involves no parsing and no copy onto the heap.
+ *
+ * All lookups ignore case, and return headwords in the case they were added with. Fuzzy search simulates a
+ * Levenshtein automaton over the trie: each node extends the dynamic programming row of its parent, and a subtree is
+ * abandoned as soon as no word below it can be within the requested distance. Distances are optimal string alignment
+ * distances, where insertions, deletions, substitutions and transpositions of adjacent letters each count as one edit.
+ */
+class HeadwordTrie {
+
+    private static final int MAGIC = 0x48575431; // "HWT1"
+    private static final int HEADER_SIZE = 12;
+    private static final int NONE = -1;
+
+    private final CharBuffer labels;
+    private final IntBuffer firstChild;
+    private final IntBuffer nextSibling;
+    private final ByteBuffer terminal;
+    private final int nodeCount;
+    private final int wordCount;
+
+    /** Builds a trie on the heap.
+     *
+     * @param sortedWords The words in the trie, sorted in natural String order. Duplicates are ignored.
+     */
+    HeadwordTrie(String[] sortedWords) {
+        char[] labelTable = new char[16];
+        int[] firstTable = new int[16];
+        int[] siblingTable = new int[16];
+        byte[] terminalTable = new byte[16];
+        int[] lastChild = new int[16];
+        int[] path = new int[16];
+        int nodes = 1; // node 0 is the root
+        firstTable[0] = NONE;
+        siblingTable[0] = NONE;
+        int words = 0;
+
+        String previous = null;
+        for (String word : sortedWords) {
+            if (word.isEmpty() || word.equals(previous))
+                continue;
+            int common = 0;
+            if (previous != null) {
+                while (common < Math.min(previous.length(), word.length()) && previous.charAt(common) == word.charAt(common))
+                    common++;
+            }
+            if (path.length <= word.length())
+                path = Arrays.copyOf(path, word.length() * 2);
+
+            // Input is sorted, so new nodes always become the last child of their parent
+            for (int depth = common; depth < word.length(); depth++) {
+                if (nodes == labelTable.length) {
+                    labelTable = Arrays.copyOf(labelTable, nodes * 2);
+                    firstTable = Arrays.copyOf(firstTable, nodes * 2);
+                    siblingTable = Arrays.copyOf(siblingTable, nodes * 2);
+                    terminalTable = Arrays.copyOf(terminalTable, nodes * 2);
+                    lastChild = Arrays.copyOf(lastChild, nodes * 2);
+                }
+                int parent = path[depth];
+                int node = nodes++;
+                labelTable[node] = word.charAt(depth);
+                firstTable[node] = NONE;
+                siblingTable[node] = NONE;
+                if (firstTable[parent] == NONE)
+                    firstTable[parent] = node;
+                else
+                    siblingTable[lastChild[parent]] = node;
+                lastChild[parent] = node;
+                path[depth + 1] = node;
+            }
+            terminalTable[path[word.length()]] = 1;
+            words++;
+            previous = word;
+        }
+
+        this.nodeCount = nodes;
+        this.wordCount = words;
+        this.labels = CharBuffer.wrap(Arrays.copyOf(labelTable, nodes));
+        this.firstChild = IntBuffer.wrap(Arrays.copyOf(firstTable, nodes));
+        this.nextSibling = IntBuffer.wrap(Arrays.copyOf(siblingTable, nodes));
+        this.terminal = ByteBuffer.wrap(Arrays.copyOf(terminalTable, nodes));
+    }
+
+    private HeadwordTrie(ByteBuffer data) throws IOException {
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC)
+            throw new IOException("Not a headword snapshot");
+        this.nodeCount = data.getInt(4);
+        this.wordCount = data.getInt(8);
+        if (nodeCount < 1 || wordCount < 0 || wordCount >= nodeCount
+                || data.capacity() != HEADER_SIZE + align((long) nodeCount * 2) + nodeCount * 9L)
+            throw new IOException("Headword snapshot is truncated or damaged");
+        int labelsEnd = HEADER_SIZE + (int) align(nodeCount * 2L);
+        this.labels = slice(data, HEADER_SIZE, nodeCount * 2).asCharBuffer();
+        this.firstChild = slice(data, labelsEnd, nodeCount * 4).asIntBuffer();
+        this.nextSibling = slice(data, labelsEnd + nodeCount * 4, nodeCount * 4).asIntBuffer();
+        this.terminal = slice(data, labelsEnd + nodeCount * 8, nodeCount);
+    }
+
+    /** Memory-maps a trie previously written with {@link #write(Path)}. Only the header and the file size are checked
+     * here, so a truncated or foreign file fails at once while opening stays independent of the trie's size. Links
+     * between nodes are checked as lookups follow them.
+     *
+     * @throws IOException If the file can't be read or is not a valid headword snapshot.
+     */
+    static HeadwordTrie map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new HeadwordTrie(data);
+        }
+    }
+
+    /** Writes the trie to a file. The data goes to a temporary file that is then renamed over the target, so readers
+     * that map the target see either the old or the new trie, never a partial one.
+     */
+    void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(nodeCount);
+            out.writeInt(wordCount);
+            for (int i = 0; i < nodeCount; i++)
+                out.writeChar(labels.get(i));
+            for (long i = nodeCount * 2L; i < align(nodeCount * 2L); i++)
+                out.writeByte(0);
+            for (int i = 0; i < nodeCount; i++)
+                out.writeInt(firstChild.get(i));
+            for (int i = 0; i < nodeCount; i++)
+                out.writeInt(nextSibling.get(i));
+            for (int i = 0; i < nodeCount; i++)
+                out.writeByte(terminal.get(i));
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    int size() {
+        return wordCount;
+    }
+
+    /** Returns every headword equal to word, ignoring case. */
+    List<String> exact(String word) {
+        List<String> result = new ArrayList<>();
+        for (Frontier f : descend(word)) {
+            if (terminal.get(f.node) != 0)
+                result.add(f.path);
+        }
+        return result;
+    }
+
+    /** Returns up to limit headwords starting with prefix, ignoring case, in alphabetical order. */
+    List<String> prefix(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        for (Frontier f : descend(prefix)) {
+            if (result.size() >= limit)
+                break;
+            if (terminal.get(f.node) != 0)
+                result.add(f.path);
+            collect(f.node, new StringBuilder(f.path), result, limit);
+        }
+        return result;
+    }
+
+    /** Calls the consumer with every headword, in alphabetical order. */
+    void forEach(Consumer<String> consumer) {
+        forEach(0, new StringBuilder(), consumer);
+    }
+
+    private void forEach(int node, StringBuilder path, Consumer<String> consumer) {
+        for (int child = child(node); child != NONE; child = sibling(child)) {
+            path.append(labels.get(child));
+            if (terminal.get(child) != 0)
+                consumer.accept(path.toString());
+            forEach(child, path, consumer);
+            path.setLength(path.length() - 1);
+        }
+    }
+
+    /** Finds all words within maxDistance edits of the query, ignoring case, in alphabetical order. */
+    List<String> search(String query, int maxDistance) {
+        // Folded per char like the labels: String.toLowerCase depends on the default locale and may change the length
+        char[] folded = query.toCharArray();
+        for (int i = 0; i < folded.length; i++)
+            folded[i] = Character.toLowerCase(folded[i]);
+        query = new String(folded);
+        List<String> result = new ArrayList<>();
+        int columns = query.length() + 1;
+        int[][] rows = new int[columns + maxDistance + 2][];
+        rows[0] = new int[columns];
+        for (int j = 0; j < columns; j++)
+            rows[0][j] = j;
+        search(0, 0, new char[rows.length], rows, query, maxDistance, result);
+        return result;
+    }
+
+    private void search(int node, int depth, char[] path, int[][] rows, String query, int maxDistance,
+                        List<String> result) {
+        // A word longer than the query by more than maxDistance can't match, which bounds the depth
+        if (depth + 1 >= rows.length)
+            return;
+        int[] above = rows[depth];
+        int[] twoAbove = depth > 0 ? rows[depth - 1] : null;
+        char previous = depth > 0 ? Character.toLowerCase(path[depth - 1]) : 0;
+        if (rows[depth + 1] == null)
+            rows[depth + 1] = new int[above.length];
+        int[] row = rows[depth + 1];
+        // Deeper rows grow from a child's row, or from this row plus one for a transposition
+        boolean transpositionPossible = min(above) < maxDistance;
+
+        for (int child = child(node); child != NONE; child = sibling(child)) {
+            char label = labels.get(child);
+            char c = Character.toLowerCase(label);
+            path[depth] = label;
+            row[0] = depth + 1;
+            int min = row[0];
+            for (int j = 1; j < row.length; j++) {
+                int cost = query.charAt(j - 1) == c ? 0 : 1;
+                int value = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+                if (twoAbove != null && j > 1 && query.charAt(j - 2) == c && query.charAt(j - 1) == previous)
+                    value = Math.min(value, twoAbove[j - 2] + 1);
+                row[j] = value;
+                min = Math.min(min, value);
+            }
+            if (terminal.get(child) != 0 && row[row.length - 1] <= maxDistance)
+                result.add(new String(path, 0, depth + 1));
+            if (min <= maxDistance || transpositionPossible)
+                search(child, depth + 1, path, rows, query, maxDistance, result);
+        }
+    }
+
+    /** Follows every path spelling word, ignoring case, returning the nodes reached in alphabetical order. */
+    private List<Frontier> descend(String word) {
+        List<Frontier> frontier = new ArrayList<>();
+        frontier.add(new Frontier(0, ""));
+        for (int i = 0; i < word.length() && !frontier.isEmpty(); i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            List<Frontier> next = new ArrayList<>();
+            for (Frontier f : frontier) {
+                for (int child = child(f.node); child != NONE; child = sibling(child)) {
+                    if (Character.toLowerCase(labels.get(child)) == c)
+                        next.add(new Frontier(child, f.path + labels.get(child)));
+                }
+            }
+            frontier = next;
+        }
+        return frontier;
+    }
+
+    private void collect(int node, StringBuilder path, List<String> result, int limit) {
+        for (int child = child(node); child != NONE && result.size() < limit; child = sibling(child)) {
+            path.append(labels.get(child));
+            if (terminal.get(child) != 0)
+                result.add(path.toString());
+            collect(child, path, result, limit);
+            path.setLength(path.length() - 1);
+        }
+    }
+
+    private int child(int node) {
+        return checked(node, firstChild.get(node));
+    }
+
+    private int sibling(int node) {
+        return checked(node, nextSibling.get(node));
+    }
+
+    /** Nodes are stored in depth-first order, so every child and sibling comes after the node linking to it. Checking
+     * that as each link is followed keeps lookups within the tables and guarantees every walk ends, and a damaged
+     * mapped file only fails the lookups that reach the damage.
+     *
+     * @throws IllegalStateException If the link is damaged.
+     */
+    private int checked(int node, int link) {
+        if (link != NONE && (link <= node || link >= nodeCount))
+            throw new IllegalStateException("Headword snapshot is damaged: bad link at node " + node);
+        return link;
+    }
+
+    private static int min(int[] row) {
+        int min = Integer.MAX_VALUE;
+        for (int value : row)
+            min = Math.min(min, value);
+        return min;
+    }
+
+    private static long align(long size) {
+        return (size + 3) & ~3L;
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int offset, int length) {
+        ByteBuffer copy = data.duplicate();
+        copy.position(offset).limit(offset + length);
+        return copy.slice();
+    }
+
+    private static class Frontier {
+        private final int node;
+        private final String path;
+
+        Frontier(int node, String path) {
+            this.node = node;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ca.ubc.cs317.dict.index;
+
+/**
+ * A definition returned by a full-text query on the local index, identified by its headword and database.
+ */
+public class IndexHit {
+    private final String word;
+    private final String databaseName;
+    private final double score;
+
+    public IndexHit(String word, String databaseName, double score) {
+        this.word = word;
+        this.databaseName = databaseName;
+        this.score = score;
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return word + "@" + databaseName + " (" + score + ")";
+    }
+}
@@ -0,0 +1,408 @@
+package ca.ubc.cs317.dict.index;
+
+import ca.ubc.cs317.dict.model.Definition;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local full-text index over the bodies of definitions seen by the client, answering "which words mention X" without
+ * contacting the server. Definitions are indexed on a background thread into an in-memory buffer, which is written to
+ * disk as an immutable segment once it grows large enough; when too many segments accumulate they are merged into one,
+ * also in the background. Queries are ranked with BM25 and may contain quoted phrases.
+ *
+ * A merged segment is named after the range of segment ids it covers. If a crash leaves the segments it replaced on
+ * disk, they are recognized as covered and deleted when the index is next opened, rather than counted twice.
+ *
+ * Segments already on disk are also read on the background thread, so opening the index doesn't hold up the caller;
+ * they become searchable once read, and definitions queued meanwhile are indexed after them. The buffer is made
+ * searchable when the queue of definitions to index runs empty, or every few hundred definitions during a long run
+ * of additions, rather than after every definition.
+ */
+public class InvertedIndex {
+
+    private static final int FLUSH_THRESHOLD = 1000;
+    private static final int MERGE_THRESHOLD = 8;
+    private static final int PUBLISH_INTERVAL = 200;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Pattern QUERY_CLAUSE = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    private final Path directory;
+    private final ExecutorService indexer;
+    private final AtomicInteger queued = new AtomicInteger(); // batches passed to addAll and not yet indexed
+
+    // Only accessed from the indexer thread
+    private SegmentBuilder buffer = new SegmentBuilder();
+    private final Set<Long> fingerprints = new HashSet<>();
+    private int nextSegmentId;
+    private int unpublished; // documents in the buffer but not in bufferSegment
+    private IOException openFailure;
+
+    // Immutable snapshots published to searching threads
+    private volatile List<Segment> segments = Collections.emptyList();
+    private volatile Segment bufferSegment;
+
+    /** Opens the index stored in a directory, creating the directory if needed. Existing segments are read in the
+     * background; use {@link #flush()} to wait until they are searchable.
+     *
+     * @param directory The directory holding the segment files.
+     * @throws IOException If the directory can't be created.
+     */
+    public InvertedIndex(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        this.indexer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "dict-indexer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        indexer.execute(() -> {
+            try {
+                readSegments();
+            } catch (IOException e) {
+                // Nothing is indexed or written, so the segments on disk are left as they are
+                openFailure = e;
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void readSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*")) {
+            for (Path file : stream) {
+                if (file.toString().endsWith(".tmp"))
+                    Files.delete(file); // left over from an interrupted write
+                else
+                    files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingInt(file -> segmentRange(file)[1]));
+
+        List<Segment> loaded = new ArrayList<>();
+        for (Path file : files) {
+            int[] range = segmentRange(file);
+            nextSegmentId = Math.max(nextSegmentId, range[1] + 1);
+            if (isCovered(file, files)) {
+                // Merged into another segment by a merge interrupted before it deleted its inputs
+                Files.delete(file);
+                continue;
+            }
+            Segment segment = Segment.read(file);
+            loaded.add(segment);
+            for (long fingerprint : segment.fingerprints)
+                fingerprints.add(fingerprint);
+        }
+        this.segments = Collections.unmodifiableList(loaded);
+    }
+
+    /** Queues a definition to be indexed. Returns immediately; definitions already in the index are ignored.
+     *
+     * @param definition The definition to be indexed.
+     */
+    public void add(Definition definition) {
+        addAll(Collections.singletonList(definition));
+    }
+
+    /** Queues a collection of definitions to be indexed, as when loading definitions in bulk. Returns immediately.
+     *
+     * @param definitions The definitions to be indexed.
+     */
+    public void addAll(Collection<Definition> definitions) {
+        List<Definition> copy = new ArrayList<>(definitions);
+        queued.incrementAndGet();
+        indexer.execute(() -> index(copy));
+    }
+
+    /** Waits until all queued definitions are indexed, and writes any buffered definitions to disk.
+     *
+     * @throws IOException If the buffered segment can't be written, or the existing segments couldn't be read.
+     */
+    public void flush() throws IOException {
+        try {
+            indexer.submit(() -> {
+                flushBuffer();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Error writing index segment", e.getCause());
+        }
+    }
+
+    /** Flushes the index and stops the background indexing thread.
+     *
+     * @throws IOException If the buffered segment can't be written.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            indexer.shutdown();
+        }
+    }
+
+    /** Returns the number of definitions currently searchable. */
+    public int getDocumentCount() {
+        int count = 0;
+        for (Segment segment : searchableSegments())
+            count += segment.docCount();
+        return count;
+    }
+
+    /** Finds the definitions that best match a query. Each word of the query is a term; text between double quotes
+     * is a phrase whose terms must appear next to each other. A definition matches if it contains any term or phrase,
+     * and definitions matching more, rarer terms rank higher.
+     *
+     * @param query The query text.
+     * @param limit The maximum number of hits returned.
+     * @return The matching definitions, best first.
+     */
+    public List<IndexHit> search(String query, int limit) {
+        List<Segment> searchable = searchableSegments();
+        long docCount = 0, totalLength = 0;
+        for (Segment segment : searchable) {
+            docCount += segment.docCount();
+            totalLength += segment.totalLength;
+        }
+        if (docCount == 0)
+            return Collections.emptyList();
+        double averageLength = (double) totalLength / docCount;
+
+        List<double[]> scores = new ArrayList<>();
+        for (Segment segment : searchable)
+            scores.add(new double[segment.docCount()]);
+
+        for (List<String> clause : parseQuery(query)) {
+            List<Map<Integer, Integer>> matches = new ArrayList<>();
+            int documentFrequency = 0;
+            for (Segment segment : searchable) {
+                Map<Integer, Integer> segmentMatches = clause.size() == 1 ?
+                        termMatches(segment, clause.get(0)) : phraseMatches(segment, clause);
+                matches.add(segmentMatches);
+                documentFrequency += segmentMatches.size();
+            }
+            if (documentFrequency == 0)
+                continue;
+
+            double idf = Math.log(1 + (docCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            for (int s = 0; s < searchable.size(); s++) {
+                Segment segment = searchable.get(s);
+                for (Map.Entry<Integer, Integer> match : matches.get(s).entrySet()) {
+                    int doc = match.getKey();
+                    double freq = match.getValue();
+                    double norm = K1 * (1 - B + B * segment.lengths[doc] / averageLength);
+                    scores.get(s)[doc] += idf * freq * (K1 + 1) / (freq + norm);
+                }
+            }
+        }
+
+        // The same definition may be present in several segments; keep its best score
+        Map<String, IndexHit> hits = new HashMap<>();
+        for (int s = 0; s < searchable.size(); s++) {
+            Segment segment = searchable.get(s);
+            double[] segmentScores = scores.get(s);
+            for (int doc = 0; doc < segmentScores.length; doc++) {
+                if (segmentScores[doc] <= 0)
+                    continue;
+                IndexHit hit = new IndexHit(segment.words[doc], segment.databases[doc], segmentScores[doc]);
+                hits.merge(hit.getWord() + '\0' + hit.getDatabaseName(), hit,
+                        (a, b) -> a.getScore() >= b.getScore() ? a : b);
+            }
+        }
+        List<IndexHit> ranked = new ArrayList<>(hits.values());
+        ranked.sort(Comparator.comparingDouble(IndexHit::getScore).reversed());
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+    }
+
+    private List<Segment> searchableSegments() {
+        Segment pending = bufferSegment;
+        List<Segment> current = segments;
+        if (pending == null)
+            return current;
+        List<Segment> all = new ArrayList<>(current);
+        all.add(pending);
+        return all;
+    }
+
+    private static List<List<String>> parseQuery(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        Matcher m = QUERY_CLAUSE.matcher(query);
+        while (m.find()) {
+            List<String> terms = Tokenizer.tokenize(m.group(m.group(1) != null ? 1 : 2));
+            if (m.group(1) != null) {
+                if (!terms.isEmpty())
+                    clauses.add(terms);
+            } else {
+                for (String term : terms)
+                    clauses.add(Collections.singletonList(term));
+            }
+        }
+        return clauses;
+    }
+
+    private static Map<Integer, Integer> termMatches(Segment segment, String term) {
+        Map<Integer, Integer> matches = new HashMap<>();
+        PostingsCursor cursor = segment.postings(term);
+        if (cursor != null) {
+            for (int doc = cursor.nextDoc(); doc >= 0; doc = cursor.nextDoc())
+                matches.put(doc, cursor.freq());
+        }
+        return matches;
+    }
+
+    /** Finds the documents containing a phrase, mapped to the number of times the phrase occurs in each. */
+    private static Map<Integer, Integer> phraseMatches(Segment segment, List<String> phrase) {
+        PostingsCursor first = segment.postings(phrase.get(0));
+        if (first == null)
+            return Collections.emptyMap();
+        Map<Integer, int[]> starts = new HashMap<>();
+        for (int doc = first.nextDoc(); doc >= 0; doc = first.nextDoc())
+            starts.put(doc, first.positions());
+
+        for (int i = 1; i < phrase.size() && !starts.isEmpty(); i++) {
+            PostingsCursor cursor = segment.postings(phrase.get(i));
+            if (cursor == null)
+                return Collections.emptyMap();
+            Map<Integer, int[]> remaining = new HashMap<>();
+            for (int doc = cursor.nextDoc(); doc >= 0; doc = cursor.nextDoc()) {
+                int[] candidates = starts.get(doc);
+                if (candidates == null)
+                    continue;
+                int[] positions = cursor.positions();
+                int offset = i;
+                int[] kept = Arrays.stream(candidates)
+                        .filter(start -> Arrays.binarySearch(positions, start + offset) >= 0).toArray();
+                if (kept.length > 0)
+                    remaining.put(doc, kept);
+            }
+            starts = remaining;
+        }
+
+        Map<Integer, Integer> matches = new HashMap<>();
+        for (Map.Entry<Integer, int[]> entry : starts.entrySet())
+            matches.put(entry.getKey(), entry.getValue().length);
+        return matches;
+    }
+
+    private void index(List<Definition> definitions) {
+        boolean last = queued.decrementAndGet() == 0;
+        if (openFailure != null)
+            return;
+        for (Definition definition : definitions) {
+            if (definition.getDefinition() == null)
+                continue;
+            long fingerprint = fingerprint(definition);
+            if (fingerprints.add(fingerprint)) {
+                buffer.addDocument(definition.getWord(), definition.getDatabaseName(), fingerprint,
+                        Tokenizer.tokenize(definition.getDefinition()));
+                unpublished++;
+            }
+        }
+        try {
+            if (buffer.size() >= FLUSH_THRESHOLD) {
+                flushBuffer();
+            } else if (unpublished > 0 && (last || unpublished >= PUBLISH_INTERVAL)) {
+                // Building copies the whole buffer, so it isn't done for every definition of a long run
+                bufferSegment = buffer.build(null);
+                unpublished = 0;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (openFailure != null)
+            throw openFailure;
+        if (buffer.size() == 0)
+            return;
+        Path file = nextSegmentFile();
+        Segment segment = buffer.build(file);
+        segment.write(file);
+
+        List<Segment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        segments = Collections.unmodifiableList(updated);
+        bufferSegment = null;
+        buffer = new SegmentBuilder();
+        unpublished = 0;
+
+        if (updated.size() > MERGE_THRESHOLD)
+            indexer.execute(this::merge);
+    }
+
+    private void merge() {
+        List<Segment> current = segments;
+        if (current.size() <= 1)
+            return;
+        try {
+            int first = Integer.MAX_VALUE;
+            for (Segment segment : current)
+                first = Math.min(first, segmentRange(segment.file)[0]);
+            Path file = directory.resolve(String.format("segment-%08d-%08d", first, nextSegmentId++));
+            Segment merged = Segment.merge(current, file);
+            merged.write(file);
+            segments = Collections.singletonList(merged);
+            for (Segment segment : current)
+                Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Path nextSegmentFile() {
+        return directory.resolve(String.format("segment-%08d", nextSegmentId++));
+    }
+
+    /** Returns the first and last segment id a file covers: its own id twice, or for a merged segment, the ids of the
+     * first segment merged into it and of the merged segment itself.
+     */
+    private static int[] segmentRange(Path file) {
+        String[] parts = file.getFileName().toString().split("-");
+        try {
+            int last = Integer.parseInt(parts[parts.length - 1]);
+            int first = parts.length > 2 ? Integer.parseInt(parts[1]) : last;
+            return new int[] {first, last};
+        } catch (NumberFormatException e) {
+            return new int[] {-1, -1};
+        }
+    }
+
+    /** Returns true if another of the files covers the whole id range of a file. */
+    private static boolean isCovered(Path file, List<Path> files) {
+        int[] range = segmentRange(file);
+        if (range[0] < 0)
+            return false;
+        for (Path other : files) {
+            int[] otherRange = segmentRange(other);
+            if (!other.equals(file) && otherRange[0] <= range[0] && range[1] <= otherRange[1])
+                return true;
+        }
+        return false;
+    }
+
+    /** 64-bit FNV-1a hash of the headword, database and body, used to skip definitions already indexed. */
+    private static long fingerprint(Definition definition) {
+        long hash = 0xcbf29ce484222325L;
+        String key = definition.getWord() + '\0' + definition.getDatabaseName() + '\0' + definition.getDefinition();
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
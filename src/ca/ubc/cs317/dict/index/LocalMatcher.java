@@ -0,0 +1,209 @@
+package ca.ubc.cs317.dict.index;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Answers MATCH queries from a cached set of headwords per database, so suggestions don't need a server round trip
+ * for every keystroke. The "prefix" and "exact" strategies, "lev" (one insertion, deletion, substitution or
+ * transposition away) and "soundex" are supported. When a database has no headword set, or the set is older than the
+ * configured maximum age, the matcher declines to answer and the caller asks the server instead.
+ *
+ * If a snapshot directory is given, every headword set is also saved there as a trie file. On the next start the file
+ * is memory-mapped on first use, so suggestions are available without fetching or parsing anything.
+ */
+public class LocalMatcher {
+
+    private final long maxAgeMillis;
+    private final Path snapshotDirectory;
+    private final Map<Database, Headwords> headwords = new ConcurrentHashMap<>();
+    private final Set<Database> snapshotsChecked = ConcurrentHashMap.newKeySet();
+
+    /** Creates a matcher whose headword sets are only kept in memory.
+     *
+     * @param maxAgeMillis The time after which a loaded headword set is considered stale.
+     */
+    public LocalMatcher(long maxAgeMillis) {
+        this(maxAgeMillis, null);
+    }
+
+    /** Creates a matcher whose headword sets are saved as snapshots in a directory.
+     *
+     * @param maxAgeMillis The time after which a headword set is considered stale, counted from when it was fetched.
+     * @param snapshotDirectory The directory holding one snapshot file per database, or null to keep sets in memory.
+     */
+    public LocalMatcher(long maxAgeMillis, Path snapshotDirectory) {
+        this.maxAgeMillis = maxAgeMillis;
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /** Replaces the headword set of a database. Building the lookup structures takes time proportional to the number
+     * of headwords, so this should not be called on the event dispatch thread. Queries running concurrently keep
+     * using the previous set; the new one is swapped in once it is complete.
+     *
+     * @param database The database the headwords belong to.
+     * @param words All headwords of the database.
+     */
+    public void load(Database database, Collection<String> words) {
+        String[] sorted = words.toArray(new String[0]);
+        Arrays.sort(sorted);
+        HeadwordTrie trie = new HeadwordTrie(sorted);
+        if (snapshotDirectory != null) {
+            try {
+                Files.createDirectories(snapshotDirectory);
+                Path file = snapshotFile(database);
+                trie.write(file);
+                trie = HeadwordTrie.map(file);
+            } catch (IOException e) {
+                // Keep the heap copy; the snapshot is written again on the next refresh
+                e.printStackTrace();
+            }
+        }
+        headwords.put(database, new Headwords(trie, System.currentTimeMillis()));
+    }
+
+    /** Returns true if a fresh headword set is available for a database. */
+    public boolean isAvailable(Database database) {
+        Headwords h = headwords(database);
+        return h != null && System.currentTimeMillis() - h.loadedAt < maxAgeMillis;
+    }
+
+    /** Hands every headword of a database's fresh headword set to a consumer, in alphabetical order.
+     *
+     * @return False if the database has no fresh headword set, or its snapshot turned out to be damaged partway, in
+     * which case the consumer may have seen only some of the headwords.
+     */
+    public boolean forEachHeadword(Database database, Consumer<String> consumer) {
+        if (!isAvailable(database))
+            return false;
+        Headwords h = headwords(database);
+        try {
+            h.trie.forEach(consumer);
+            return true;
+        } catch (IllegalStateException e) {
+            headwords.remove(database, h);
+            return false;
+        }
+    }
+
+    /** Returns true if the named strategy can be answered locally. */
+    public static boolean supports(MatchingStrategy strategy) {
+        if (strategy == null)
+            return false;
+        switch (strategy.getName()) {
+            case "prefix":
+            case "exact":
+            case "lev":
+            case "soundex":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Finds matching headwords without contacting the server.
+     *
+     * @param word The word to be matched.
+     * @param strategy The matching strategy.
+     * @param database The database whose headwords are searched.
+     * @return The matching headwords in alphabetical order, or null if this query can't be answered locally because
+     * the strategy is not supported or the database has no fresh headword set.
+     */
+    public Set<String> match(String word, MatchingStrategy strategy, Database database) {
+        return match(word, strategy, database, Integer.MAX_VALUE);
+    }
+
+    /** Finds at most limit matching headwords without contacting the server, in alphabetical order. Prefix matches
+     * stop walking the headwords once enough are found.
+     *
+     * @return The first matching headwords, or null if this query can't be answered locally.
+     * @see #match(String, MatchingStrategy, Database)
+     */
+    public Set<String> match(String word, MatchingStrategy strategy, Database database, int limit) {
+        if (!supports(strategy) || !isAvailable(database))
+            return null;
+        Headwords h = headwords(database);
+
+        try {
+            switch (strategy.getName()) {
+                case "prefix":
+                    return new LinkedHashSet<>(h.trie.prefix(word, limit));
+                case "exact":
+                    return first(h.trie.exact(word), limit);
+                case "lev":
+                    return first(h.trie.search(word, 1), limit);
+                case "soundex":
+                    return first(new TreeSet<>(h.soundex().getOrDefault(Soundex.encode(word),
+                            Collections.emptyList())), limit);
+                default:
+                    return null;
+            }
+        } catch (IllegalStateException e) {
+            // A lookup reached a damaged link in a mapped snapshot, which is from then on treated as missing
+            headwords.remove(database, h);
+            return null;
+        }
+    }
+
+    private static Set<String> first(Collection<String> words, int limit) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String word : words) {
+            if (result.size() >= limit)
+                break;
+            result.add(word);
+        }
+        return result;
+    }
+
+    private Headwords headwords(Database database) {
+        if (database == null)
+            return null;
+        Headwords h = headwords.get(database);
+        if (h == null && snapshotDirectory != null && snapshotsChecked.add(database)) {
+            Path file = snapshotFile(database);
+            try {
+                if (Files.exists(file)) {
+                    h = new Headwords(HeadwordTrie.map(file), Files.getLastModifiedTime(file).toMillis());
+                    headwords.putIfAbsent(database, h);
+                    h = headwords.get(database);
+                }
+            } catch (IOException e) {
+                // A damaged snapshot is treated as missing and replaced by the next load
+            }
+        }
+        return h;
+    }
+
+    private Path snapshotFile(Database database) {
+        return snapshotDirectory.resolve(database.getName().replaceAll("[^A-Za-z0-9._-]", "_") + ".headwords");
+    }
+
+    private static class Headwords {
+        private final HeadwordTrie trie;
+        private final long loadedAt;
+        private volatile Map<String, List<String>> soundex;
+
+        Headwords(HeadwordTrie trie, long loadedAt) {
+            this.trie = trie;
+            this.loadedAt = loadedAt;
+        }
+
+        /** Soundex codes are only needed by one strategy, so they are computed on first use. */
+        Map<String, List<String>> soundex() {
+            Map<String, List<String>> codes = soundex;
+            if (codes == null) {
+                Map<String, List<String>> built = new HashMap<>();
+                trie.forEach(word -> built.computeIfAbsent(Soundex.encode(word), k -> new ArrayList<>()).add(word));
+                soundex = codes = built;
+            }
+            return codes;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ca.ubc.cs317.dict.index;
+
+/**
+ * Reads a posting list in the compressed format written by {@link SegmentBuilder}: the number of documents, then for
+ * each document the delta from the previous document id, the term frequency, and the deltas between positions. All
+ * numbers are stored as variable-length integers, seven bits per byte.
+ */
+class PostingsCursor {
+
+    private final byte[] data;
+    private int offset;
+    private final int docFrequency;
+    private int remaining;
+    private int doc = -1;
+    private int freq;
+    private boolean positionsRead;
+
+    PostingsCursor(byte[] data, int offset) {
+        this.data = data;
+        this.offset = offset;
+        this.docFrequency = readVarInt();
+        this.remaining = docFrequency;
+    }
+
+    /** Number of documents in the posting list. */
+    int docFrequency() {
+        return docFrequency;
+    }
+
+    /** Advances to the next document, skipping any positions that were not read.
+     *
+     * @return The next document id, or -1 if the list is exhausted.
+     */
+    int nextDoc() {
+        if (doc >= 0 && !positionsRead)
+            positions();
+        if (remaining == 0)
+            return -1;
+        remaining--;
+        doc = (doc < 0 ? 0 : doc) + readVarInt();
+        freq = readVarInt();
+        positionsRead = false;
+        return doc;
+    }
+
+    int freq() {
+        return freq;
+    }
+
+    /** Decodes the positions of the term in the current document. May only be called once per document. */
+    int[] positions() {
+        int[] positions = new int[freq];
+        int position = 0;
+        for (int i = 0; i < freq; i++) {
+            position += readVarInt();
+            positions[i] = position;
+        }
+        positionsRead = true;
+        return positions;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[offset++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
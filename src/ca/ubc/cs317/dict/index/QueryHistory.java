@@ -0,0 +1,312 @@
+package ca.ubc.cs317.dict.index;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Words the user searched for before, ranked by how often and how recently they were searched, so that suggestions can
+ * be shown as soon as a key is typed. Each search adds one to a word's score, and scores decay exponentially with a
+ * fixed half-life, so a word searched daily last month ranks below one searched twice today. Once the history is full,
+ * the word with the lowest score is forgotten to make room for a new one.
+ *
+ * Words are kept in a sorted map keyed by their lower case form, so the words starting with a prefix form one range
+ * of the map, and a lookup only touches the words it could return. The history is small enough that ranking that
+ * range takes microseconds, and lookups may be made on the event dispatch thread.
+ *
+ * The history is stored as an append-only log with one record per search, each followed by a checksum. A record
+ * interrupted by a crash fails its checksum and is dropped, along with anything after it, when the log is next opened.
+ * A file that isn't a history log at all is replaced by an empty log, so one damaged file doesn't disable the history.
+ * When the log has grown to several times the number of words, it is compacted into one record per word, written to
+ * a temporary file that is then renamed over the log. Appending and compacting happen on a background thread.
+ */
+public class QueryHistory {
+
+    private static final int MAGIC = 0x51484c31; // "QHL1"
+    private static final byte SEARCH = 1;
+    private static final byte SCORE = 2;
+    private static final int COMPACTION_FACTOR = 4;
+    private static final int MAX_WORD_LENGTH = 256;
+
+    private final Path file;
+    private final int maxEntries;
+    private final long halfLifeMillis;
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    private final ExecutorService writer;
+    private long searches;
+
+    // Only used by the writer thread, once the log has been replayed
+    private int logRecords;
+    private long searchesWritten;
+
+    /** Opens the history stored in a file, creating an empty history if the file doesn't exist.
+     *
+     * @param file The log file.
+     * @param maxEntries The maximum number of words remembered.
+     * @param halfLifeMillis The time after which a search counts half as much as a new one.
+     * @throws IOException If the directory can't be created, or the file exists but can't be read or can't be
+     *                     repaired.
+     */
+    public QueryHistory(Path file, int maxEntries, long halfLifeMillis) throws IOException {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.halfLifeMillis = halfLifeMillis;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (Files.exists(file))
+            replay();
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "dict-history");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /** Records a search for a word. The history is updated immediately; the log is written in the background.
+     *
+     * @param word The word searched for.
+     */
+    public void record(String word) {
+        record(word, System.currentTimeMillis());
+    }
+
+    synchronized void record(String word, long time) {
+        word = word.trim();
+        if (word.isEmpty() || word.length() > MAX_WORD_LENGTH)
+            return;
+        apply(word, 1, time);
+        long search = ++searches;
+        byte[] record = encode(SEARCH, word, 1, time);
+        writer.execute(() -> append(search, record));
+    }
+
+    /** Returns the highest ranked words starting with a prefix, ignoring case, in the case they were last searched
+     * with.
+     *
+     * @param prefix The text typed so far.
+     * @param limit The maximum number of words returned.
+     * @return The words, highest ranked first.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        return suggest(prefix, limit, System.currentTimeMillis());
+    }
+
+    synchronized List<String> suggest(String prefix, int limit, long time) {
+        String key = key(prefix);
+        List<Entry> matches = new ArrayList<>(key.isEmpty() ? entries.values()
+                : entries.subMap(key, true, key + Character.MAX_VALUE, false).values());
+        matches.sort(Comparator.comparingDouble((Entry e) -> e.scoreAt(time, halfLifeMillis)).reversed());
+
+        List<String> words = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++)
+            words.add(matches.get(i).word);
+        return words;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Waits for pending log writes and stops the background thread. */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Adds to the score of a word, evicting the lowest ranked word if the history is full. Replaying the log calls
+     * this with the times recorded, so it rebuilds exactly the history that was written.
+     */
+    private void apply(String word, double score, long time) {
+        String key = key(word);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxEntries)
+                evictLowest(time);
+            entries.put(key, new Entry(word, score, time));
+        } else {
+            entry.score = entry.scoreAt(time, halfLifeMillis) + score;
+            entry.updated = Math.max(entry.updated, time);
+            entry.word = word;
+        }
+    }
+
+    private void evictLowest(long time) {
+        Map.Entry<String, Entry> lowest = null;
+        double lowestScore = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            double score = e.getValue().scoreAt(time, halfLifeMillis);
+            if (lowest == null || score < lowestScore) {
+                lowest = e;
+                lowestScore = score;
+            }
+        }
+        if (lowest != null)
+            entries.remove(lowest.getKey());
+    }
+
+    private void replay() throws IOException {
+        long valid = 0;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            // Anything else is treated as an empty log and rewritten below
+            if (in.readInt() == MAGIC) {
+                valid = 4;
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int length = in.readUnsignedShort();
+                    byte[] body = new byte[length];
+                    in.readFully(body);
+                    int checksum = in.readInt();
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != checksum)
+                        break;
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                    byte type = record.readByte();
+                    String word = record.readUTF();
+                    double score = type == SCORE ? record.readDouble() : 1;
+                    long time = record.readLong();
+                    apply(word, score, time);
+                    logRecords++;
+                    valid += 2 + length + 4;
+                }
+            }
+        } catch (EOFException e) {
+            // A record cut short by a crash; everything before it is intact
+        }
+        // Later records are appended after the last intact one, not after the damaged tail
+        if (valid < Files.size(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                if (valid < 4)
+                    channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+                channel.truncate(Math.max(valid, 4));
+            }
+        }
+    }
+
+    /** Appends the record of a search to the log, or compacts the log if it has grown too long. Runs on the writer
+     * thread.
+     *
+     * @param search The sequence number of the search, counted since the history was opened.
+     * @param record The encoded record.
+     */
+    private void append(long search, byte[] record) {
+        // Already part of a compacted log written since it was recorded
+        if (search <= searchesWritten)
+            return;
+        try {
+            if (logRecords >= COMPACTION_FACTOR * Math.max(size(), 1)) {
+                compact();
+                return;
+            }
+            try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (Files.size(file) == 0)
+                    out.write(ByteBuffer.allocate(4).putInt(MAGIC).array());
+                out.write(record);
+            }
+            logRecords++;
+            searchesWritten = search;
+        } catch (IOException e) {
+            // The search is still in the history for this session; it is lost on restart
+            e.printStackTrace();
+        }
+    }
+
+    /** Rewrites the log as one record per word, including every search recorded so far. */
+    private void compact() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long included;
+        int records;
+        synchronized (this) {
+            new DataOutputStream(bytes).writeInt(MAGIC);
+            for (Entry entry : entries.values())
+                bytes.write(encode(SCORE, entry.word, entry.score, entry.updated));
+            included = searches;
+            records = entries.size();
+        }
+
+        // The data must be on disk before the rename, or a crash could leave the log renamed but empty
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+            while (data.hasRemaining())
+                channel.write(data);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logRecords = records;
+        searchesWritten = included;
+    }
+
+    /** Encodes a record as its length, its body, and a CRC-32 of the body. */
+    private static byte[] encode(byte type, String word, double score, long time) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeByte(type);
+            out.writeUTF(word);
+            if (type == SCORE)
+                out.writeDouble(score);
+            out.writeLong(time);
+
+            CRC32 crc = new CRC32();
+            crc.update(body.toByteArray());
+            ByteArrayOutputStream record = new ByteArrayOutputStream(body.size() + 6);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            recordOut.writeShort(body.size());
+            body.writeTo(recordOut);
+            recordOut.writeInt((int) crc.getValue());
+            return record.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown by in-memory streams
+        }
+    }
+
+    private static String key(String word) {
+        return word.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Entry {
+        private String word;
+        private double score;
+        private long updated;
+
+        Entry(String word, double score, long updated) {
+            this.word = word;
+            this.score = score;
+            this.updated = updated;
+        }
+
+        /** The score decayed to a given time. */
+        double scoreAt(long time, long halfLifeMillis) {
+            return score * Math.pow(0.5, (double) (time - updated) / halfLifeMillis);
+        }
+    }
+}
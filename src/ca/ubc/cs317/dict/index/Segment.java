@@ -0,0 +1,137 @@
+package ca.ubc.cs317.dict.index;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * An immutable, searchable part of the index. A segment holds a table of documents (headword, database, length and
+ * content fingerprint), a sorted term dictionary, and the compressed posting lists of all terms. Segments are written
+ * once and never modified; updates create new segments, and merging replaces several segments with a single one.
+ */
+class Segment {
+
+    private static final int MAGIC = 0x44495831; // "DIX1"
+
+    final Path file;
+    final String[] words;
+    final String[] databases;
+    final int[] lengths;
+    final long[] fingerprints;
+    final long totalLength;
+    private final String[] terms;
+    private final int[] offsets;
+    private final byte[] postings;
+
+    Segment(Path file, String[] words, String[] databases, int[] lengths, long[] fingerprints, long totalLength,
+            String[] terms, int[] offsets, byte[] postings) {
+        this.file = file;
+        this.words = words;
+        this.databases = databases;
+        this.lengths = lengths;
+        this.fingerprints = fingerprints;
+        this.totalLength = totalLength;
+        this.terms = terms;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+    int docCount() {
+        return words.length;
+    }
+
+    /** Returns a cursor over the posting list of a term, or null if the term does not occur in this segment. */
+    PostingsCursor postings(String term) {
+        int index = Arrays.binarySearch(terms, term);
+        return index < 0 ? null : new PostingsCursor(postings, offsets[index]);
+    }
+
+    /** Writes this segment to a file. The data is written to a temporary file first and then renamed, so a crash
+     * never leaves a partially written segment behind.
+     */
+    void write(Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(words.length);
+            for (int i = 0; i < words.length; i++) {
+                out.writeUTF(words[i]);
+                out.writeUTF(databases[i]);
+                out.writeInt(lengths[i]);
+                out.writeLong(fingerprints[i]);
+            }
+            out.writeInt(terms.length);
+            for (int i = 0; i < terms.length; i++) {
+                out.writeUTF(terms[i]);
+                out.writeInt(offsets[i]);
+            }
+            out.writeInt(postings.length);
+            out.write(postings);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Segment read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not an index segment: " + file);
+            int docCount = in.readInt();
+            String[] words = new String[docCount];
+            String[] databases = new String[docCount];
+            int[] lengths = new int[docCount];
+            long[] fingerprints = new long[docCount];
+            long totalLength = 0;
+            for (int i = 0; i < docCount; i++) {
+                words[i] = in.readUTF();
+                databases[i] = in.readUTF();
+                lengths[i] = in.readInt();
+                fingerprints[i] = in.readLong();
+                totalLength += lengths[i];
+            }
+            int termCount = in.readInt();
+            String[] terms = new String[termCount];
+            int[] offsets = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                terms[i] = in.readUTF();
+                offsets[i] = in.readInt();
+            }
+            byte[] postings = new byte[in.readInt()];
+            in.readFully(postings);
+            return new Segment(file, words, databases, lengths, fingerprints, totalLength, terms, offsets, postings);
+        }
+    }
+
+    /** Combines several segments into one, keeping documents in segment order.
+     *
+     * @param segments The segments to be merged, oldest first.
+     * @param file The file the merged segment will be written to.
+     * @return The merged segment, not yet written to disk.
+     */
+    static Segment merge(List<Segment> segments, Path file) {
+        SegmentBuilder builder = new SegmentBuilder();
+        int[] bases = new int[segments.size()];
+        TreeSet<String> allTerms = new TreeSet<>();
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            bases[s] = builder.size();
+            for (int i = 0; i < segment.docCount(); i++)
+                builder.addDocumentInfo(segment.words[i], segment.databases[i], segment.lengths[i],
+                        segment.fingerprints[i]);
+            allTerms.addAll(Arrays.asList(segment.terms));
+        }
+        for (String term : allTerms) {
+            for (int s = 0; s < segments.size(); s++) {
+                PostingsCursor cursor = segments.get(s).postings(term);
+                if (cursor == null)
+                    continue;
+                for (int doc = cursor.nextDoc(); doc >= 0; doc = cursor.nextDoc())
+                    builder.appendPosting(term, bases[s] + doc, cursor.positions());
+            }
+        }
+        return builder.build(file);
+    }
+}
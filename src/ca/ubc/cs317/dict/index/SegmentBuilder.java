@@ -0,0 +1,126 @@
+package ca.ubc.cs317.dict.index;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Accumulates documents and their posting lists in memory until they are frozen into a {@link Segment}. Documents
+ * are numbered in the order they are added, and postings must be appended in increasing document order.
+ */
+class SegmentBuilder {
+
+    private final List<String> words = new ArrayList<>();
+    private final List<String> databases = new ArrayList<>();
+    private int[] lengths = new int[16];
+    private long[] fingerprints = new long[16];
+    private long totalLength;
+    private final TreeMap<String, PostingBuffer> postings = new TreeMap<>();
+
+    /** Adds a document, indexing every term at its position.
+     *
+     * @return The id of the new document within this builder.
+     */
+    int addDocument(String word, String database, long fingerprint, List<String> terms) {
+        int doc = addDocumentInfo(word, database, terms.size(), fingerprint);
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < terms.size(); i++)
+            positions.computeIfAbsent(terms.get(i), t -> new ArrayList<>()).add(i);
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet())
+            appendPosting(entry.getKey(), doc, entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        return doc;
+    }
+
+    /** Adds a document without any postings; used when postings are copied from existing segments.
+     *
+     * @return The id of the new document within this builder.
+     */
+    int addDocumentInfo(String word, String database, int length, long fingerprint) {
+        int doc = words.size();
+        if (doc == lengths.length) {
+            lengths = Arrays.copyOf(lengths, doc * 2);
+            fingerprints = Arrays.copyOf(fingerprints, doc * 2);
+        }
+        words.add(word);
+        databases.add(database);
+        lengths[doc] = length;
+        fingerprints[doc] = fingerprint;
+        totalLength += length;
+        return doc;
+    }
+
+    void appendPosting(String term, int doc, int[] positions) {
+        postings.computeIfAbsent(term, t -> new PostingBuffer()).add(doc, positions);
+    }
+
+    int size() {
+        return words.size();
+    }
+
+    Segment build(Path file) {
+        String[] terms = new String[postings.size()];
+        int[] offsets = new int[postings.size()];
+        ByteSink sink = new ByteSink();
+        int i = 0;
+        for (Map.Entry<String, PostingBuffer> entry : postings.entrySet()) {
+            terms[i] = entry.getKey();
+            offsets[i++] = sink.length;
+            sink.writeVarInt(entry.getValue().docFrequency);
+            sink.write(entry.getValue().data);
+        }
+        int count = words.size();
+        return new Segment(file, words.toArray(new String[0]), databases.toArray(new String[0]),
+                Arrays.copyOf(lengths, count), Arrays.copyOf(fingerprints, count), totalLength,
+                terms, offsets, sink.toByteArray());
+    }
+
+    private static class PostingBuffer {
+        private final ByteSink data = new ByteSink();
+        private int docFrequency;
+        private int lastDoc;
+
+        void add(int doc, int[] positions) {
+            data.writeVarInt(doc - lastDoc);
+            data.writeVarInt(positions.length);
+            int last = 0;
+            for (int position : positions) {
+                data.writeVarInt(position - last);
+                last = position;
+            }
+            lastDoc = doc;
+            docFrequency++;
+        }
+    }
+
+    private static class ByteSink {
+        private byte[] buffer = new byte[16];
+        private int length;
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void write(ByteSink other) {
+            ensure(other.length);
+            System.arraycopy(other.buffer, 0, buffer, length, other.length);
+            length += other.length;
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            buffer[length++] = (byte) b;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ca.ubc.cs317.dict.index;
+
+/**
+ * American Soundex codes, as used by the "soundex" matching strategy: the first letter followed by three digits
+ * describing the following consonants.
+ */
+class Soundex {
+
+    //                                     abcdefghijklmnopqrstuvwxyz
+    private static final String DIGITS = "01230120022455012623010202";
+
+    static String encode(String word) {
+        StringBuilder code = new StringBuilder(4);
+        char last = 0;
+        for (int i = 0; i < word.length() && code.length() < 4; i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            if (c < 'a' || c > 'z')
+                continue;
+            char digit = DIGITS.charAt(c - 'a');
+            if (code.length() == 0) {
+                code.append(Character.toUpperCase(c));
+            } else if (digit != '0' && digit != last) {
+                code.append(digit);
+            }
+            // 'h' and 'w' don't separate letters with the same code, vowels do
+            if (c != 'h' && c != 'w')
+                last = digit;
+        }
+        if (code.length() == 0)
+            return "";
+        while (code.length() < 4)
+            code.append('0');
+        return code.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package ca.ubc.cs317.dict.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits definition bodies and queries into lower-case terms. A term is a maximal run of letters and digits; any other
+ * character separates terms. The position of a term is its index in the returned list. Terms are stored in segment
+ * files, so they are lower-cased the same way whatever the default locale.
+ */
+class Tokenizer {
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null)
+            return terms;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                terms.add(text.substring(start, Math.min(i, start + MAX_TERM_LENGTH)).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,255 @@
+package ca.ubc.cs317.dict.mirror;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import ca.ubc.cs317.dict.net.DictConnectionException;
+import ca.ubc.cs317.dict.net.DictionaryConnection;
+import ca.ubc.cs317.dict.net.ReplyOverflow;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Copies DICT databases into a local {@link Snapshot} file, for use where the server can't be reached. Headwords are
+ * listed with a regular expression MATCH, and their definitions are fetched in batches spread over several
+ * connections, each batch pipelined on its connection.
+ *
+ * Re-syncing an existing snapshot only fetches what may have changed. A database whose SHOW INFO text is unchanged
+ * keeps its stored definitions, minus headwords the server no longer lists, and only new headwords are fetched. DICT
+ * has no way to ask whether a single definition changed, so a database whose SHOW INFO text changed, which is where
+ * dictd reports a database's version and build date, is fetched again in full.
+ *
+ * Usage: MirrorSync host[:port] snapshot-file [--connections N] database...
+ */
+public class MirrorSync {
+
+    private static final int DEFAULT_PORT = 2628;
+    private static final int DEFAULT_CONNECTIONS = 4;
+    private static final int BATCH_SIZE = 64;
+    private static final MatchingStrategy HEADWORD_STRATEGY = new MatchingStrategy("re", "Regular expressions");
+
+    private final String host;
+    private final int port;
+    private final int connections;
+
+    /** @param connections The number of connections used to fetch definitions in parallel. */
+    public MirrorSync(String host, int port, int connections) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+    }
+
+    /** Creates or updates a snapshot with the current contents of some databases. Databases in an existing snapshot
+     * that are not listed are dropped from it. The snapshot file is only replaced once the sync has succeeded.
+     *
+     * @param file The snapshot file.
+     * @param databaseNames The names of the databases to be mirrored, in any order. The snapshot keeps them in the order
+     *                      the server lists them.
+     * @throws DictConnectionException If the server can't be reached, a database doesn't exist, or its headwords can't
+     * be listed.
+     * @throws IOException If the snapshot can't be read or written.
+     */
+    public void sync(Path file, List<String> databaseNames) throws DictConnectionException, IOException {
+        Snapshot old = null;
+        if (Files.exists(file)) {
+            try {
+                old = Snapshot.open(file);
+            } catch (IOException e) {
+                System.err.println("Existing snapshot can't be read, fetching everything: " + e.getMessage());
+            }
+        }
+
+        List<Database> databases = new ArrayList<>();
+        long[] infoHashes;
+        List<Map<String, String>> headwords = new ArrayList<>();
+        DictionaryConnection control = new DictionaryConnection(host, port);
+        try {
+            Map<String, Database> available = control.getDatabaseList();
+            for (String name : databaseNames) {
+                if (!available.containsKey(name))
+                    throw new DictConnectionException("No database named " + name + " on " + host);
+            }
+            // Kept in server order whatever order they were listed in, since "*" and "!" on the snapshot rely on it
+            for (Database database : available.values()) {
+                if (databaseNames.contains(database.getName()))
+                    databases.add(database);
+            }
+            infoHashes = new long[databases.size()];
+            for (int i = 0; i < databases.size(); i++) {
+                Database database = databases.get(i);
+                infoHashes[i] = fingerprint(control.getDatabaseInfo(database));
+                // Keyed by folded headword, since DEFINE ignores case and would return the same definitions twice
+                Map<String, String> words = new LinkedHashMap<>();
+                for (String word : control.getMatchList(".", HEADWORD_STRATEGY, database))
+                    words.putIfAbsent(Snapshot.fold(word), word);
+                if (words.isEmpty())
+                    throw new DictConnectionException("Headwords of " + database.getName() + " can't be listed");
+                headwords.add(words);
+            }
+        } finally {
+            control.close();
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        try (SnapshotWriter writer = new SnapshotWriter(databases, infoHashes, directory)) {
+            List<Batch> batches = new ArrayList<>();
+            for (int i = 0; i < databases.size(); i++) {
+                Set<String> kept = old != null ? reuse(old, databases.get(i), infoHashes[i], headwords.get(i), i, writer)
+                        : Collections.emptySet();
+                List<String> missing = new ArrayList<>();
+                for (Map.Entry<String, String> word : headwords.get(i).entrySet()) {
+                    if (!kept.contains(word.getKey()))
+                        missing.add(word.getValue());
+                }
+                System.out.printf("%s: %d headwords, %d kept, %d to fetch%n", databases.get(i).getName(),
+                        headwords.get(i).size(), kept.size(), missing.size());
+                for (int start = 0; start < missing.size(); start += BATCH_SIZE)
+                    batches.add(new Batch(i, missing.subList(start, Math.min(start + BATCH_SIZE, missing.size()))));
+            }
+
+            fetch(batches, databases, writer);
+            writer.write(file);
+            System.out.printf("Wrote %d definitions to %s%n", writer.size(), file);
+        }
+    }
+
+    /** Copies the stored definitions of a database into the writer, if its SHOW INFO text is unchanged, and returns
+     * the folded headwords that were copied.
+     */
+    private static Set<String> reuse(Snapshot old, Database database, long infoHash, Map<String, String> current,
+                                     int id, SnapshotWriter writer) throws IOException {
+        int oldId = old.databaseId(database.getName());
+        if (oldId < 0 || old.infoHash(oldId) != infoHash)
+            return Collections.emptySet();
+        Set<String> kept = new HashSet<>();
+        for (int entry = 0; entry < old.size(); entry++) {
+            if (old.databaseOf(entry) != oldId)
+                continue;
+            String headword = old.headword(entry);
+            String key = Snapshot.fold(headword);
+            if (current.containsKey(key)) {
+                writer.add(headword, id, old.compressedBody(entry));
+                kept.add(key);
+            }
+        }
+        return kept;
+    }
+
+    /** Fetches the definitions of all batches, with one worker per connection taking batches from a shared queue. A
+     * batch whose connection fails is retried once on a new connection.
+     */
+    private void fetch(List<Batch> batches, List<Database> databases, SnapshotWriter writer)
+            throws DictConnectionException, IOException {
+        Queue<Batch> queue = new ConcurrentLinkedQueue<>(batches);
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(connections, batches.size()); i++) {
+            workers.add(executor.submit(() -> {
+                DictionaryConnection connection = open();
+                try {
+                    for (Batch batch = queue.poll(); batch != null; batch = queue.poll()) {
+                        try {
+                            fetchBatch(connection, batch, databases, writer);
+                        } catch (DictConnectionException e) {
+                            // Replies may still be pending on the failed connection, so it can't be reused
+                            connection.close();
+                            connection = open();
+                            fetchBatch(connection, batch, databases, writer);
+                        }
+                    }
+                } finally {
+                    connection.close();
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> worker : workers)
+                worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("Interrupted while fetching definitions", e);
+        } catch (ExecutionException e) {
+            queue.clear();
+            if (e.getCause() instanceof DictConnectionException)
+                throw (DictConnectionException) e.getCause();
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new DictConnectionException("Error", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void fetchBatch(DictionaryConnection connection, Batch batch, List<Database> databases,
+                                   SnapshotWriter writer) throws DictConnectionException, IOException {
+        List<String> words = new ArrayList<>();
+        List<Definition> definitions = new ArrayList<>();
+        connection.getDefinitions(batch.words, databases.get(batch.database), (word, definition) -> {
+            words.add(word);
+            definitions.add(definition);
+        });
+        // Compressed here, on the worker threads, rather than under the writer's lock. Entries are keyed by the
+        // headword that was requested, which is what the headword list and later lookups use, rather than by the
+        // server's spelling of it
+        for (int i = 0; i < definitions.size(); i++)
+            writer.add(words.get(i), batch.database, SnapshotWriter.compress(definitions.get(i).getDefinition()));
+    }
+
+    private DictionaryConnection open() throws DictConnectionException {
+        DictionaryConnection connection = new DictionaryConnection(host, port);
+        // A mirror must not lose text, and bodies are compressed as soon as they arrive
+        connection.setReplyMemoryLimit(Integer.MAX_VALUE, ReplyOverflow.TRUNCATE);
+        return connection;
+    }
+
+    /** 64-bit FNV-1a hash of a database's SHOW INFO text. */
+    private static long fingerprint(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public static void main(String[] args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        int connections = DEFAULT_CONNECTIONS;
+        int option = arguments.indexOf("--connections");
+        if (option >= 0 && option + 1 < arguments.size()) {
+            connections = Integer.parseInt(arguments.get(option + 1));
+            arguments.subList(option, option + 2).clear();
+        }
+        if (arguments.size() < 3) {
+            System.err.println("Usage: MirrorSync host[:port] snapshot-file [--connections N] database...");
+            System.exit(2);
+        }
+
+        String[] server = arguments.get(0).split(":", 2);
+        int port = server.length > 1 ? Integer.parseInt(server[1]) : DEFAULT_PORT;
+        Path file = Paths.get(arguments.get(1));
+        try {
+            new MirrorSync(server[0], port, connections).sync(file, arguments.subList(2, arguments.size()));
+        } catch (DictConnectionException | IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static class Batch {
+        private final int database;
+        private final List<String> words;
+
+        Batch(int database, List<String> words) {
+            this.database = database;
+            this.words = words;
+        }
+    }
+}
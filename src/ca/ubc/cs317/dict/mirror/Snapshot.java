@@ -0,0 +1,229 @@
+package ca.ubc.cs317.dict.mirror;
+
+import ca.ubc.cs317.dict.cache.DefinitionSource;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only local copy of one or more DICT databases, written by {@link MirrorSync}. The file is columnar: headword
+ * offsets, body offsets and database ids are stored as fixed-width arrays, followed by the UTF-8 headwords and the
+ * deflate-compressed definition bodies. Each column is memory-mapped, so opening a snapshot reads only its header,
+ * and a lookup touches a few pages of the headword column plus the bodies it returns.
+ *
+ * Entries are sorted by headword ignoring case, then by database, so the definitions of a word are adjacent and come
+ * out in the order the server lists its databases, like a "*" lookup on the server. Each column is mapped separately,
+ * so a snapshot may be larger than 2GB as long as each column is smaller.
+ *
+ * <pre>
+ * int    magic "DMS1"
+ * int    header length, followed by the header:
+ *          int databaseCount, then per database: UTF name, UTF description, long info hash
+ *          int entryCount
+ * (padding to a multiple of 8)
+ * long[entryCount + 1]  body offsets
+ * int[entryCount + 1]   headword offsets
+ * short[entryCount]     database ids
+ * (padding to a multiple of 8)
+ * byte[]                headwords, UTF-8
+ * byte[]                bodies, raw deflate
+ * </pre>
+ */
+public class Snapshot implements DefinitionSource {
+
+    static final int MAGIC = 0x444d5331; // "DMS1"
+
+    private final List<Database> databases;
+    private final long[] infoHashes;
+    private final int entryCount;
+    private final LongBuffer bodyOffsets;
+    private final IntBuffer headwordOffsets;
+    private final ShortBuffer databaseIds;
+    private final ByteBuffer headwords;
+    private final ByteBuffer bodies;
+
+    private Snapshot(FileChannel channel) throws IOException {
+        ByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0, 8);
+        if (start.getInt(0) != MAGIC)
+            throw new IOException("Not a mirror snapshot");
+        int headerLength = start.getInt(4);
+        ByteBuffer headerBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 8, headerLength);
+        byte[] header = new byte[headerLength];
+        headerBuffer.get(header);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        int databaseCount = in.readInt();
+        List<Database> list = new ArrayList<>();
+        infoHashes = new long[databaseCount];
+        for (int i = 0; i < databaseCount; i++) {
+            list.add(new Database(in.readUTF(), in.readUTF()));
+            infoHashes[i] = in.readLong();
+        }
+        databases = Collections.unmodifiableList(list);
+        entryCount = in.readInt();
+
+        long position = align(8 + headerLength);
+        bodyOffsets = map(channel, position, 8L * (entryCount + 1)).asLongBuffer();
+        position += 8L * (entryCount + 1);
+        headwordOffsets = map(channel, position, 4L * (entryCount + 1)).asIntBuffer();
+        position += 4L * (entryCount + 1);
+        databaseIds = map(channel, position, 2L * entryCount).asShortBuffer();
+        position = align(position + 2L * entryCount);
+        headwords = map(channel, position, headwordOffsets.get(entryCount));
+        position += headwordOffsets.get(entryCount);
+        bodies = map(channel, position, bodyOffsets.get(entryCount));
+    }
+
+    /** Opens a snapshot file. The file is mapped, not read, and may be shared by several processes.
+     *
+     * @param file The snapshot file.
+     * @throws IOException If the file can't be read or is not a snapshot.
+     */
+    public static Snapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new Snapshot(channel);
+        }
+    }
+
+    /** Returns the databases in the snapshot, in the order the server listed them. */
+    public List<Database> getDatabases() {
+        return databases;
+    }
+
+    /** Returns the number of definitions in the snapshot. */
+    public int size() {
+        return entryCount;
+    }
+
+    /** Looks up the definitions of a word, ignoring case, as a DEFINE command on the mirrored server would.
+     *
+     * @param word The word whose definitions are to be retrieved.
+     * @param database The database to be searched, or "*" for all databases, or "!" for the first database with
+     *                 definitions.
+     * @return The definitions found, possibly none.
+     */
+    @Override
+    public List<Definition> getDefinitions(String word, Database database) {
+        List<Definition> result = new ArrayList<>();
+        String key = fold(word);
+        int wanted = -1;
+        if (!database.getName().equals("*") && !database.getName().equals("!")) {
+            wanted = databaseId(database.getName());
+            if (wanted < 0)
+                return result;
+        }
+
+        int firstDatabase = -1;
+        for (int entry = lowerBound(key); entry < entryCount && fold(headword(entry)).equals(key); entry++) {
+            int id = databaseIds.get(entry);
+            if (wanted >= 0 && id != wanted)
+                continue;
+            if (database.getName().equals("!")) {
+                if (firstDatabase < 0)
+                    firstDatabase = id;
+                else if (id != firstDatabase)
+                    break;
+            }
+            result.add(definition(entry));
+        }
+        return result;
+    }
+
+    int databaseId(String name) {
+        for (int i = 0; i < databases.size(); i++) {
+            if (databases.get(i).getName().equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    long infoHash(int database) {
+        return infoHashes[database];
+    }
+
+    int databaseOf(int entry) {
+        return databaseIds.get(entry);
+    }
+
+    String headword(int entry) {
+        int start = headwordOffsets.get(entry);
+        byte[] bytes = new byte[headwordOffsets.get(entry + 1) - start];
+        headwords.duplicate().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the compressed body of an entry, as stored. */
+    byte[] compressedBody(int entry) {
+        long start = bodyOffsets.get(entry);
+        byte[] bytes = new byte[(int) (bodyOffsets.get(entry + 1) - start)];
+        bodies.duplicate().position((int) start).get(bytes);
+        return bytes;
+    }
+
+    Definition definition(int entry) {
+        Definition definition = new Definition(headword(entry), databases.get(databaseIds.get(entry)).getName());
+        String body = decompress(compressedBody(entry));
+        if (!body.isEmpty())
+            definition.setDefinition(body);
+        return definition;
+    }
+
+    /** Finds the first entry whose folded headword is not less than key. */
+    private int lowerBound(String key) {
+        int low = 0, high = entryCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (fold(headword(middle)).compareTo(key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    static String fold(String word) {
+        return word.toLowerCase(Locale.ROOT);
+    }
+
+    static String decompress(byte[] compressed) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] chunk = new byte[Math.max(64, compressed.length * 4)];
+            ByteArrayOutputStream out = new ByteArrayOutputStream(chunk.length);
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                out.write(chunk, 0, count);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Damaged snapshot body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+}
@@ -0,0 +1,166 @@
+package ca.ubc.cs317.dict.mirror;
+
+import ca.ubc.cs317.dict.model.Database;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Builds a {@link Snapshot} file. Entries may be added in any order and from several threads; their compressed bodies
+ * are appended to a temporary file as they arrive, so memory use is bounded by the headwords, not the definitions.
+ * {@link #write(Path)} then sorts the entries and writes the columns.
+ */
+class SnapshotWriter implements Closeable {
+
+    private final List<Database> databases;
+    private final long[] infoHashes;
+    private final Path spoolFile;
+    private final FileChannel spool;
+    private final List<Entry> entries = new ArrayList<>();
+    private long spoolSize;
+
+    /** Creates an empty writer.
+     *
+     * @param databases The databases in the snapshot, in server order. Entries refer to them by index.
+     * @param infoHashes A hash of each database's SHOW INFO text, used to detect changed databases when re-syncing.
+     * @param directory Where the temporary body file is created, ideally on the same disk as the snapshot.
+     * @throws IOException If the temporary file can't be created.
+     */
+    SnapshotWriter(List<Database> databases, long[] infoHashes, Path directory) throws IOException {
+        this.databases = databases;
+        this.infoHashes = infoHashes;
+        this.spoolFile = Files.createTempFile(directory, "mirror", ".bodies");
+        this.spool = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /** Adds a definition, with a body already compressed by {@link #compress(String)}.
+     *
+     * @throws IOException If the body can't be written to the temporary file.
+     */
+    synchronized void add(String headword, int database, byte[] compressedBody) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(compressedBody);
+        while (buffer.hasRemaining())
+            spool.write(buffer, spoolSize + buffer.position());
+        entries.add(new Entry(headword, Snapshot.fold(headword), database, spoolSize, compressedBody.length));
+        spoolSize += compressedBody.length;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /** Writes the snapshot. The data goes to a temporary file that is then renamed over the target, so a snapshot that
+     * is being read, or a sync that fails halfway, never leaves a partial file behind.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    synchronized void write(Path file) throws IOException {
+        // Stable, so definitions of the same word and database keep the order the server sent them in
+        entries.sort(Comparator.comparing((Entry e) -> e.key).thenComparingInt(e -> e.database));
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(databases.size());
+        for (int i = 0; i < databases.size(); i++) {
+            header.writeUTF(databases.get(i).getName());
+            header.writeUTF(databases.get(i).getDescription());
+            header.writeLong(infoHashes[i]);
+        }
+        header.writeInt(entries.size());
+
+        List<byte[]> headwords = new ArrayList<>(entries.size());
+        for (Entry entry : entries)
+            headwords.add(entry.headword.getBytes(StandardCharsets.UTF_8));
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(Snapshot.MAGIC);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+            pad(out, 8 + headerBytes.size());
+
+            long bodyOffset = 0;
+            out.writeLong(0);
+            for (Entry entry : entries)
+                out.writeLong(bodyOffset += entry.length);
+            int headwordOffset = 0;
+            out.writeInt(0);
+            for (byte[] headword : headwords)
+                out.writeInt(headwordOffset += headword.length);
+            for (Entry entry : entries)
+                out.writeShort(entry.database);
+            pad(out, Snapshot.align(8 + headerBytes.size()) + 12L * (entries.size() + 1) + 2L * entries.size());
+
+            for (byte[] headword : headwords)
+                out.write(headword);
+            ByteBuffer body = ByteBuffer.allocate(8192);
+            for (Entry entry : entries) {
+                for (long copied = 0; copied < entry.length; ) {
+                    body.clear().limit((int) Math.min(body.capacity(), entry.length - copied));
+                    int count = spool.read(body, entry.offset + copied);
+                    if (count < 0)
+                        throw new EOFException("Body file is shorter than expected");
+                    out.write(body.array(), 0, count);
+                    copied += count;
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Deletes the temporary body file. */
+    @Override
+    public void close() throws IOException {
+        spool.close();
+        Files.deleteIfExists(spoolFile);
+    }
+
+    /** Compresses a definition body for storage; a missing body is stored as an empty one. */
+    static byte[] compress(String body) {
+        byte[] input = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished())
+                out.write(chunk, 0, deflater.deflate(chunk));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Pads with zeros from the given file position up to the next multiple of 8 bytes. */
+    private static void pad(DataOutputStream out, long position) throws IOException {
+        for (long i = position; i < Snapshot.align(position); i++)
+            out.writeByte(0);
+    }
+
+    private static class Entry {
+        private final String headword;
+        private final String key;
+        private final int database;
+        private final long offset;
+        private final int length;
+
+        Entry(String headword, String key, int database, long offset, int length) {
+            this.headword = headword;
+            this.key = key;
+            this.database = database;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -1,63 +1,102 @@
-package ca.ubc.cs317.dict.model;
-
-import java.util.Objects;
-
-/**
- * Created by Jonatan on 2017-09-09.
- */
-public class Definition {
-
-    private String word;
-    private String databaseName;
-    private String definition;
-
-    public Definition(String word, String database) {
-        this.word = word;
-        this.databaseName = database;
-    }
-
-    public String getWord() {
-        return word;
-    }
-
-    public String getDatabaseName() {
-        return databaseName;
-    }
-
-    public String getDefinition() {
-        return definition;
-    }
-
-    public void setDefinition(String definition) {
-        this.definition = definition.replaceAll("[ \t\r]*\n", "\n");
-    }
-
-    public void appendDefinition(String definition) {
-        if (this.definition == null)
-            this.setDefinition(definition);
-        else if (definition != null)
-            this.setDefinition(this.definition + System.lineSeparator() + definition);
-    }
-
-    @Override
-    public String toString() {
-        return "('" + word + '\'' +
-                "@'" + databaseName + '\'' +
-                ": '" + definition + "')";
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Definition that = (Definition) o;
-        return word.equals(that.word) && databaseName.equals(that.databaseName) &&
-            Objects.equals(definition == null ? null : definition.trim(),
-                           that.definition == null ? null : that.definition.trim());
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(word, databaseName, definition == null ? null : definition.trim());
-    }
-}
+package ca.ubc.cs317.dict.model;
+
+import java.util.Objects;
+
+/**
+ * Created by Jonatan on 2017-09-09.
+ */
+public class Definition {
+
+    private String word;
+    private String databaseName;
+    private String definition;
+    private boolean truncated;
+
+    public Definition(String word, String database) {
+        this.word = word;
+        this.databaseName = database;
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    public void setDefinition(String definition) {
+        this.definition = stripLineEnds(definition);
+    }
+
+    /** Returns true if the body is incomplete because the server sent more text than the client was willing to keep. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    public void appendDefinition(String definition) {
+        if (this.definition == null)
+            this.setDefinition(definition);
+        else if (definition != null)
+            this.setDefinition(this.definition + System.lineSeparator() + definition);
+    }
+
+    /** Removes spaces, tabs and carriage returns at the end of every line, as the pattern "[ \t\r]*\n" replaced by
+     * "\n" would. Line feeds are found with String.indexOf, which the JVM vectorizes, and a body without trailing
+     * whitespace is returned as is, without a copy.
+     */
+    static String stripLineEnds(String text) {
+        StringBuilder stripped = null;
+        int copied = 0;
+        int lf = text.indexOf('\n');
+        while (lf >= 0) {
+            int end = lf;
+            while (end > copied && isLineEndSpace(text.charAt(end - 1)))
+                end--;
+            if (end < lf) {
+                if (stripped == null)
+                    stripped = new StringBuilder(text.length());
+                stripped.append(text, copied, end);
+                copied = lf;
+            }
+            lf = text.indexOf('\n', lf + 1);
+        }
+        if (stripped == null)
+            return text;
+        return stripped.append(text, copied, text.length()).toString();
+    }
+
+    private static boolean isLineEndSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    @Override
+    public String toString() {
+        return "('" + word + '\'' +
+                "@'" + databaseName + '\'' +
+                ": '" + definition + "')";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Definition that = (Definition) o;
+        return word.equals(that.word) && databaseName.equals(that.databaseName) &&
+            Objects.equals(definition == null ? null : definition.trim(),
+                           that.definition == null ? null : that.definition.trim());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(word, databaseName, definition == null ? null : definition.trim());
+    }
+}
@@ -0,0 +1,39 @@
+package ca.ubc.cs317.dict.net;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning one command, from the moment it is sent until the last line of its reply is read.
+ */
+@Name("ca.ubc.cs317.dict.Command")
+@Label("DICT Command")
+@Description("A command sent to the DICT server, up to the end of its reply")
+@Category({"DICT Client", "Protocol"})
+class CommandEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Database")
+    String database;
+
+    @Label("Status")
+    @Description("Status code of the first reply line, or 0 if no reply was received")
+    int status;
+
+    @Label("Request Size")
+    @DataAmount
+    int requestBytes;
+
+    @Label("Reply Size")
+    @DataAmount
+    long replyBytes;
+
+    @Label("Reply Lines")
+    int replyLines;
+}
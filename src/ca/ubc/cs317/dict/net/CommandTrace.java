@@ -0,0 +1,175 @@
+package ca.ubc.cs317.dict.net;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Flight Recorder instrumentation for one command and its reply. Reply lines are read through the trace, which counts
+ * them and emits the command, first reply line, reply parse and definition assembly events as the reply progresses.
+ *
+ * Reply sizes are the bytes the connection's reader consumed for each line or skipped text, terminators included, so
+ * they match the wire whatever the encoding and line ends. Each event is only created if its type is enabled in a
+ * running recording, checked once when the trace is created, so a command whose events are all off allocates none and
+ * the remaining work is a few field updates per line.
+ *
+ * Loading the first event class registers all of them with Flight Recorder, which takes far longer than a whole
+ * command in a short-lived process. Event types are therefore only looked up once Flight Recorder has been
+ * initialized, at startup or when the first recording is started in a running JVM; until then the event classes
+ * aren't loaded.
+ */
+final class CommandTrace {
+
+    private final CommandEvent command;
+    private final FirstReplyLineEvent firstLine;
+    private final ReplyParseEvent parse;
+    private final boolean definitionsEnabled;
+    private DefinitionAssemblyEvent definition;
+    private long definitionStartBytes;
+    private int definitionStartLines;
+
+    private long replyBytes;
+    private int replyLines;
+    private long lastLineBytes;
+
+    /** Starts tracing a command. Should be called just before the command is sent.
+     *
+     * @param type The command keyword, such as DEFINE or MATCH.
+     * @param database The name of the database the command applies to, or null if it has none.
+     * @param request The full command line sent to the server.
+     */
+    CommandTrace(String type, String database, String request) {
+        boolean initialized = FlightRecorder.isInitialized();
+        command = initialized && EventTypes.COMMAND.isEnabled() ? new CommandEvent() : null;
+        firstLine = initialized && EventTypes.FIRST_REPLY_LINE.isEnabled() ? new FirstReplyLineEvent() : null;
+        parse = initialized && EventTypes.REPLY_PARSE.isEnabled() ? new ReplyParseEvent() : null;
+        definitionsEnabled = initialized && EventTypes.DEFINITION_ASSEMBLY.isEnabled();
+        if (command != null) {
+            command.command = type;
+            command.database = database;
+            command.requestBytes = request.getBytes(StandardCharsets.UTF_8).length + 2;
+            command.begin();
+        }
+        if (firstLine != null) {
+            firstLine.command = type;
+            firstLine.database = database;
+            firstLine.begin();
+        }
+        if (parse != null) {
+            parse.command = type;
+            parse.database = database;
+        }
+    }
+
+    /** Reads one line of the reply, recording its size.
+     *
+     * @param input The reader connected to the server.
+     * @return The line read, or null at the end of the stream.
+     * @throws IOException If the line could not be read.
+     */
+    String readLine(ReplyReader input) throws IOException {
+        long before = input.getBytesConsumed();
+        String line = input.readLine();
+        if (line == null) {
+            lastLineBytes = 0;
+            return null;
+        }
+        if (replyLines++ == 0) {
+            if (command != null)
+                command.status = statusCode(line);
+            if (firstLine != null) {
+                firstLine.status = statusCode(line);
+                firstLine.commit();
+            }
+            if (parse != null)
+                parse.begin();
+        }
+        lastLineBytes = input.getBytesConsumed() - before;
+        replyBytes += lastLineBytes;
+        return line;
+    }
+
+    /** Skips the rest of a text reply, up to and including its terminating "." line, without building a String per
+     * line, recording the size of what was skipped.
+     *
+     * @param input The reader connected to the server.
+     * @throws IOException If the text could not be read.
+     */
+    void skipText(ReplyReader input) throws IOException {
+        long before = input.getBytesConsumed();
+        long[] skipped = input.skipText();
+        replyBytes += input.getBytesConsumed() - before;
+        replyLines += (int) skipped[1];
+        lastLineBytes = 0;
+    }
+
+    /** Marks the start of a definition body, right after its 151 header line was read. */
+    void beginDefinition(String word, String database) {
+        if (!definitionsEnabled)
+            return;
+        definition = new DefinitionAssemblyEvent();
+        definition.word = word;
+        definition.database = database;
+        definitionStartBytes = replyBytes;
+        definitionStartLines = replyLines;
+        definition.begin();
+    }
+
+    /** Marks the end of the current definition body, before it is handed to its consumer. */
+    void endDefinition() {
+        if (definition == null)
+            return;
+        definition.end();
+        if (definition.shouldCommit()) {
+            // The line that ended the body (the next 151 header or the 250 status) is not part of it
+            boolean ended = lastLineBytes > 0;
+            definition.bytes = replyBytes - lastLineBytes - definitionStartBytes;
+            definition.lines = replyLines - (ended ? 1 : 0) - definitionStartLines;
+            definition.commit();
+        }
+        definition = null;
+    }
+
+    /** Ends the trace once the reply was fully read, or reading it failed. */
+    void end() {
+        if (command != null) {
+            command.replyBytes = replyBytes;
+            command.replyLines = replyLines;
+            command.commit();
+        }
+        if (parse != null && replyLines > 0) {
+            parse.replyBytes = replyBytes;
+            parse.replyLines = replyLines;
+            parse.commit();
+        }
+    }
+
+    /** Returns true if connection events should be created, which is when a running recording has them enabled. */
+    static boolean isConnectEnabled() {
+        return FlightRecorder.isInitialized() && EventTypes.CONNECT.isEnabled();
+    }
+
+    /** Holds the event types, so the event classes are only loaded once Flight Recorder is initialized. */
+    private static final class EventTypes {
+        static final EventType CONNECT = EventType.getEventType(ConnectEvent.class);
+        static final EventType COMMAND = EventType.getEventType(CommandEvent.class);
+        static final EventType FIRST_REPLY_LINE = EventType.getEventType(FirstReplyLineEvent.class);
+        static final EventType REPLY_PARSE = EventType.getEventType(ReplyParseEvent.class);
+        static final EventType DEFINITION_ASSEMBLY = EventType.getEventType(DefinitionAssemblyEvent.class);
+    }
+
+    private static int statusCode(String line) {
+        if (line.length() < 3)
+            return 0;
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9')
+                return 0;
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+}
@@ -0,0 +1,148 @@
+package ca.ubc.cs317.dict.net;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Adapts the number of requests allowed in flight to one DICT server, so that parallel lookups get as much throughput
+ * as the server sustains without running into its connection limit. The limit follows additive increase,
+ * multiplicative decrease: it grows by about one request per round of successful replies while it is in use, is
+ * halved when the server signals overload (a 4xx reply such as 420, a refused connection, or a read timeout), and is
+ * trimmed when replies become much slower than the fastest recently seen, which is how a server queueing requests
+ * shows up before it starts refusing them.
+ *
+ * Requests over the limit wait in a bounded queue. A request is shed, failing at once, if the queue is full, and
+ * fails if it waits longer than the maximum wait.
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // Below this, a slower reply is noise rather than a sign of queueing at the server
+    private static final long MIN_LATENCY_SIGNAL_NANOS = 20_000_000L;
+    private static final double SMOOTHING = 0.2;
+    private static final int BASELINE_DRIFT = 100;
+
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double baselineNanos = Double.MAX_VALUE;
+    private double smoothedNanos;
+    private long lastDecrease = Long.MIN_VALUE;
+
+    /** @param initialLimit The number of requests allowed in flight before anything is known about the server.
+     * @param maxLimit The upper bound of the limit, usually the number of connections available.
+     * @param maxQueued The number of requests that may wait for a slot; further requests are shed.
+     * @param maxWaitMillis How long a request may wait for a slot.
+     */
+    public ConcurrencyLimiter(int initialLimit, int maxLimit, int maxQueued, long maxWaitMillis) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWaitMillis * 1_000_000L;
+    }
+
+    /** Waits for a slot and takes it. Each successful call must be followed by exactly one call to
+     * {@link #success(long, long)}, {@link #dropped(long)} or {@link #ignore(long)} with the returned ticket.
+     *
+     * @return A ticket identifying the request, which records when it started.
+     * @throws DictConnectionException If the request was shed, waited too long, or the thread was interrupted.
+     */
+    public synchronized long acquire() throws DictConnectionException {
+        if (inFlight >= getLimit()) {
+            if (queued >= maxQueued)
+                throw new DictConnectionException("Too many requests waiting for the server; request dropped");
+            queued++;
+            try {
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (inFlight >= getLimit()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        throw new DictConnectionException("Timed out waiting for the server to accept more requests");
+                    wait(Math.max(1, remaining / 1_000_000L));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DictConnectionException("Interrupted while waiting for the server", e);
+            } finally {
+                queued--;
+            }
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    /** Releases a slot after a reply was received, using its latency to adjust the limit.
+     *
+     * @param ticket The ticket returned by {@link #acquire()}.
+     * @param finished The {@link System#nanoTime()} at which the reply was complete, which may be earlier than the
+     *                 release if cleaning up the connection took time.
+     */
+    public synchronized void success(long ticket, long finished) {
+        double latency = finished - ticket;
+        if (latency < baselineNanos)
+            baselineNanos = latency;
+        else
+            baselineNanos += (latency - baselineNanos) / BASELINE_DRIFT;
+        smoothedNanos = smoothedNanos == 0 ? latency : smoothedNanos + SMOOTHING * (latency - smoothedNanos);
+
+        if (smoothedNanos > LATENCY_TOLERANCE * baselineNanos && smoothedNanos > baselineNanos + MIN_LATENCY_SIGNAL_NANOS)
+            decrease(ticket, finished, LATENCY_BACKOFF_RATIO);
+        else if (inFlight >= limit / 2)
+            // Only grown while the limit is actually being used, so an idle period can't inflate it
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        release();
+    }
+
+    /** Releases a slot after the server signalled overload, shrinking the limit. */
+    public synchronized void dropped(long ticket) {
+        decrease(ticket, System.nanoTime(), BACKOFF_RATIO);
+        release();
+    }
+
+    /** Releases a slot after a request failed for a reason that says nothing about the server's load. */
+    public synchronized void ignore(long ticket) {
+        release();
+    }
+
+    /** Returns the number of requests currently allowed in flight. */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /** Returns true if a failed request indicates that the server is overloaded, rather than that the request itself
+     * was wrong or the connection broke for another reason.
+     */
+    static boolean isOverload(DictConnectionException e) {
+        if (e.getStatus() != null)
+            return e.getStatus().isTransientNegativeReply();
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof SocketTimeoutException)
+                return true;
+        }
+        return false;
+    }
+
+    private void decrease(long ticket, long now, double ratio) {
+        // Requests that were already in flight at the last decrease saw the old limit; cutting again for each of
+        // them would collapse the limit for one burst of overload
+        if (ticket <= lastDecrease)
+            return;
+        limit = Math.max(1, limit * ratio);
+        lastDecrease = now;
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+}
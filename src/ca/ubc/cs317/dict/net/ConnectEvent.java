@@ -0,0 +1,32 @@
+package ca.ubc.cs317.dict.net;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the opening of a connection, from the start of the TCP connect until the server's
+ * banner has been read.
+ */
+@Name("ca.ubc.cs317.dict.Connect")
+@Label("DICT Connect")
+@Description("Opening of a DICT connection, up to and including the server banner")
+@Category({"DICT Client", "Protocol"})
+class ConnectEvent extends Event {
+
+    @Label("Host")
+    String host;
+
+    @Label("Port")
+    int port;
+
+    @Label("Banner Size")
+    @DataAmount
+    int bannerBytes;
+
+    @Label("Succeeded")
+    boolean succeeded;
+}
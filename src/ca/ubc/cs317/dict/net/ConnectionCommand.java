@@ -0,0 +1,9 @@
+package ca.ubc.cs317.dict.net;
+
+/**
+ * A request run against a single connection, so that wrappers can decide which connection runs it and what happens
+ * when it fails.
+ */
+interface ConnectionCommand<T> {
+    T execute(DictionaryConnection connection) throws DictConnectionException;
+}
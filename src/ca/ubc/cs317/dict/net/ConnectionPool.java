@@ -0,0 +1,241 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A bounded set of connections to one DICT server, so that several requests can be in flight at the same time.
+ * Connections are opened on demand up to the maximum size, and a request that finds them all busy waits for one to be
+ * returned. A connection whose request fails is aborted rather than reused, since its reply may not have been read to
+ * the end.
+ *
+ * Requests also pass through a {@link ConcurrencyLimiter}, which keeps the number in flight below what the server
+ * currently sustains. When the limit shrinks, returned connections above it are closed, freeing slots on a server
+ * that limits its clients.
+ */
+public class ConnectionPool {
+
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 15000;
+    private static final int MAX_QUEUED_PER_CONNECTION = 16;
+    private static final int MAX_QUEUE_WAIT_MILLIS = 10000;
+    private static final int MAX_CONNECT_RETRIES = 3;
+
+    private final String host;
+    private final int port;
+    private final int maxSize;
+    private final ConcurrencyLimiter limiter;
+    private final Deque<DictionaryConnection> idle = new ArrayDeque<>();
+    private int openCount;
+    private boolean closed;
+    private volatile List<Database> databases;
+
+    /** Creates an empty pool; connections are only opened when requests need them.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @param maxSize The maximum number of connections open at the same time.
+     */
+    public ConnectionPool(String host, int port, int maxSize) {
+        this.host = host;
+        this.port = port;
+        this.maxSize = maxSize;
+        this.limiter = new ConcurrencyLimiter((maxSize + 1) / 2, maxSize, MAX_QUEUED_PER_CONNECTION * maxSize,
+                MAX_QUEUE_WAIT_MILLIS);
+    }
+
+    /** Runs a request on a pooled connection, waiting for the concurrency limit and for a connection to become
+     * available if necessary. A request whose new connection is turned away by an overloaded server is queued again
+     * under the reduced limit, since nothing was sent yet; it then usually runs on a connection freed by another.
+     *
+     * A request on an idle connection that fails before any reply arrives is retried once on a new connection. The
+     * server has most likely closed the idle session, and since nothing was received, nothing was handed on either.
+     *
+     * @throws DictConnectionException If the request was shed by the concurrency limiter, no connection could be
+     * obtained, or the request failed.
+     */
+    <T> T execute(ConnectionCommand<T> command) throws DictConnectionException {
+        boolean fresh = false;
+        for (int attempt = 0; ; attempt++) {
+            long ticket = limiter.acquire();
+            Borrowed borrowed;
+            try {
+                borrowed = borrow(fresh);
+            } catch (DictConnectionException e) {
+                if (!ConcurrencyLimiter.isOverload(e)) {
+                    limiter.ignore(ticket);
+                    throw e;
+                }
+                limiter.dropped(ticket);
+                if (attempt < MAX_CONNECT_RETRIES)
+                    continue;
+                throw e;
+            }
+
+            DictionaryConnection connection = borrowed.connection;
+            long receivedBefore = connection.getBytesReceived();
+            T result;
+            try {
+                result = command.execute(connection);
+            } catch (DictConnectionException | RuntimeException e) {
+                boolean stale = borrowed.reused && !fresh && connection.getBytesReceived() == receivedBefore;
+                discard(connection);
+                if (e instanceof DictConnectionException && ConcurrencyLimiter.isOverload((DictConnectionException) e))
+                    limiter.dropped(ticket);
+                else
+                    limiter.ignore(ticket);
+                if (stale && e instanceof DictConnectionException) {
+                    fresh = true;
+                    continue;
+                }
+                throw e;
+            }
+            long finished = System.nanoTime();
+            release(connection);
+            limiter.success(ticket, finished);
+            return result;
+        }
+    }
+
+    /** Retrieves all definitions for a word on a single pooled connection, as
+     * {@link DictionaryConnection#getDefinitions(String, Database)}. Unlike {@link FanOutClient}, "*" and "!" are sent
+     * to the server as they are, so the request occupies one connection however many databases it searches.
+     */
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return execute(c -> c.getDefinitions(word, database));
+    }
+
+    /** Returns the databases of the server in the order the server lists them, stopping at the "--exit--" marker
+     * after which dictd excludes databases from "*" and "!" searches. The list is fetched once and then cached.
+     *
+     * @throws DictConnectionException If the list could not be retrieved.
+     */
+    public List<Database> getSearchableDatabases() throws DictConnectionException {
+        List<Database> list = databases;
+        if (list == null) {
+            list = new ArrayList<>();
+            for (Database database : execute(DictionaryConnection::getDatabaseList).values()) {
+                if (database.getName().equals("--exit--"))
+                    break;
+                list.add(database);
+            }
+            databases = list;
+        }
+        return list;
+    }
+
+    /** Closes all idle connections; connections in use are closed when they are returned.
+     */
+    public void close() {
+        List<DictionaryConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (DictionaryConnection connection : toClose)
+            connection.close();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Returns the number of requests currently allowed in flight, between 1 and the maximum size. */
+    public int getConcurrencyLimit() {
+        return limiter.getLimit();
+    }
+
+    /** Takes an idle connection, or opens a new one if none is idle and the pool is not full.
+     *
+     * @param fresh If true, a new connection is opened even when idle ones are available, closing the one idle the
+     *              longest to make room, since it is likely as stale as the one that just failed.
+     */
+    private Borrowed borrow(boolean fresh) throws DictConnectionException {
+        DictionaryConnection stale = null;
+        synchronized (this) {
+            try {
+                while (!closed && idle.isEmpty() && openCount >= maxSize)
+                    wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DictConnectionException("Interrupted while waiting for a connection", e);
+            }
+            if (closed)
+                throw new DictConnectionException("Connection pool closed");
+            if (!idle.isEmpty() && !fresh)
+                return new Borrowed(idle.pop(), true);
+            if (!idle.isEmpty())
+                stale = idle.removeLast();
+            else
+                openCount++;
+        }
+        if (stale != null)
+            stale.abort();
+
+        // Connecting happens outside the lock so other requests can still take and return connections
+        DictionaryConnection connection = null;
+        try {
+            connection = new DictionaryConnection(host, port);
+            connection.setReadTimeout(DEFAULT_READ_TIMEOUT_MILLIS);
+            return new Borrowed(connection, false);
+        } catch (DictConnectionException | RuntimeException e) {
+            if (connection != null)
+                connection.close();
+            synchronized (this) {
+                openCount--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    private void release(DictionaryConnection connection) {
+        synchronized (this) {
+            if (!closed && openCount <= limiter.getLimit()) {
+                idle.push(connection);
+                notifyAll();
+                return;
+            }
+            openCount--;
+            notifyAll();
+        }
+        connection.close();
+    }
+
+    /** Gives up a connection whose request failed. It is aborted rather than sent QUIT, which on a session that just
+     * failed or timed out could wait for another read timeout. Its slot is only freed once the socket is closed, so a
+     * server that limits its clients never sees it overlap with the next request's connection.
+     */
+    private void discard(DictionaryConnection connection) {
+        connection.abort();
+        synchronized (this) {
+            openCount--;
+            notifyAll();
+        }
+    }
+
+    private static class Borrowed {
+        private final DictionaryConnection connection;
+        private final boolean reused;
+
+        Borrowed(DictionaryConnection connection, boolean reused) {
+            this.connection = connection;
+            this.reused = reused;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ca.ubc.cs317.dict.net;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the assembly of one Definition, from its 151 header line until its body is complete.
+ * Time spent by the consumer the definition is handed to is not included.
+ */
+@Name("ca.ubc.cs317.dict.DefinitionAssembly")
+@Label("DICT Definition Assembly")
+@Description("Reading and assembly of a single definition body")
+@Category({"DICT Client", "Protocol"})
+class DefinitionAssemblyEvent extends Event {
+
+    @Label("Word")
+    String word;
+
+    @Label("Database")
+    String database;
+
+    @Label("Body Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Body Lines")
+    int lines;
+}
@@ -1,22 +1,41 @@
-package ca.ubc.cs317.dict.net;
-
-/**
- * Created by Jonatan on 2017-09-10.
- */
-public class DictConnectionException extends Exception {
-
-    public DictConnectionException() {
-    }
-
-    public DictConnectionException(Throwable cause) {
-        super(cause);
-    }
-
-    public DictConnectionException(String message) {
-        super(message);
-    }
-
-    public DictConnectionException(String message, Throwable cause) {
-        super(message, cause);
-    }
-}
+package ca.ubc.cs317.dict.net;
+
+/**
+ * Created by Jonatan on 2017-09-10.
+ */
+public class DictConnectionException extends Exception {
+
+    private transient Status status;
+
+    public DictConnectionException() {
+    }
+
+    public DictConnectionException(Throwable cause) {
+        super(cause);
+        if (cause instanceof DictConnectionException)
+            this.status = ((DictConnectionException) cause).status;
+    }
+
+    public DictConnectionException(String message) {
+        super(message);
+    }
+
+    public DictConnectionException(String message, Throwable cause) {
+        super(message, cause);
+        if (cause instanceof DictConnectionException)
+            this.status = ((DictConnectionException) cause).status;
+    }
+
+    /** @param status The unexpected status line received from the server. */
+    public DictConnectionException(String message, Status status) {
+        super(message);
+        this.status = status;
+    }
+
+    /** Returns the status line that caused the error, if the error was caused by a reply from the server, or null
+     * otherwise. A wrapped DictConnectionException passes its status on, so the status survives rethrowing.
+     */
+    public Status getStatus() {
+        return status;
+    }
+}
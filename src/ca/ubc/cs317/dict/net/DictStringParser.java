@@ -1,29 +1,41 @@
-package ca.ubc.cs317.dict.net;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-/**
- * Created by Jonatan on 2017-09-09.
- */
-public class DictStringParser {
-
-    private static Pattern stringUnit = Pattern.compile("\"([^\"]*)\"|(\\S+)");
-
-    /** Splits a String into DICT-supported atoms. This is equivalent to String.split, but if a set of quotes is found,
-     * the spaces within the quotes are not used for splitting.
-     *
-     * @param original Original string to be split.
-     * @return An array of strings corresponding to all "atoms" found in the original string.
-     */
-    public static String[] splitAtoms(String original) {
-        List<String> list = new ArrayList<>();
-        Matcher m = stringUnit.matcher(original);
-        while (m.find()) {
-            list.add(m.group(m.group(1) != null ? 1 : 2));
-        }
-        return list.toArray(new String[list.size()]);
-    }
-}
+package ca.ubc.cs317.dict.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Created by Jonatan on 2017-09-09.
+ */
+public class DictStringParser {
+
+    private static Pattern stringUnit = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    /** Splits a String into DICT-supported atoms. This is equivalent to String.split, but if a set of quotes is found,
+     * the spaces within the quotes are not used for splitting.
+     *
+     * @param original Original string to be split.
+     * @return An array of strings corresponding to all "atoms" found in the original string.
+     */
+    public static String[] splitAtoms(String original) {
+        List<String> list = new ArrayList<>();
+        Matcher m = stringUnit.matcher(original);
+        while (m.find()) {
+            list.add(m.group(m.group(1) != null ? 1 : 2));
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    /** Formats a String as a single DICT atom, the reverse of {@link #splitAtoms(String)}. Strings containing spaces
+     * or quotes are enclosed in double quotes, with embedded quotes and backslashes escaped.
+     *
+     * @param original Original string, such as a headword that may contain spaces.
+     * @return The string as it should be sent in a command.
+     */
+    public static String quoteAtom(String original) {
+        if (!original.isEmpty() && original.chars().noneMatch(c -> c == ' ' || c == '"' || c == '\\' || c == '\''))
+            return original;
+        return '"' + original.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -1,353 +1,640 @@
-package ca.ubc.cs317.dict.net;
-
-import ca.ubc.cs317.dict.model.Database;
-import ca.ubc.cs317.dict.model.Definition;
-import ca.ubc.cs317.dict.model.MatchingStrategy;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.util.*;
-
-/**
- * Created by Jonatan on 2017-09-09.
- */
-public class DictionaryConnection {
-
-    private static final int DEFAULT_PORT = 2628;
-    private Socket socket;
-    private BufferedReader input;
-    private PrintWriter output;
-    private String host;
-    private int port;
-    private boolean connected;
-
-    /** Establishes a new connection with a DICT server using an explicit host and port number, and handles initial
-     * welcome messages.
-     *
-     * @param host Name of the host where the DICT server is running
-     * @param port Port number used by the DICT server
-     * @throws DictConnectionException If the host does not exist, the connection can't be established, or the messages
-     * don't match their expected value.
-     */
-    public DictionaryConnection(String host, int port) throws DictConnectionException {
-        try{
-            socket = new Socket(host, port);
-
-            //writes to server
-            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-
-            //listens to serve
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            this.input = in;
-            this.output = out;
-
-            String welcomeMessage = in.readLine();
-            if (welcomeMessage == null) {
-                throw new DictConnectionException("No welcome message received from server");
-            }
-
-            //220 dict.dict.org dictd 1.12.1/rf on Linux 4.19.0-10-amd64 <auth.mime> <547903076.14484.1758085096@dict.dict.org>
-            if (!welcomeMessage.startsWith("220")) {
-                throw new DictConnectionException("Unexpected welcome message: " + welcomeMessage);
-            }
-
-            this.host = host;
-            this.port = port;
-            this.connected = true;
-        } catch (Exception e) {
-            throw new DictConnectionException("Not implemented");
-        }
-    }
-
-    /** Establishes a new connection with a DICT server using an explicit host, with the default DICT port number, and
-     * handles initial welcome messages.
-     *
-     * @param host Name of the host where the DICT server is running
-     * @throws DictConnectionException If the host does not exist, the connection can't be established, or the messages
-     * don't match their expected value.
-     */
-    public DictionaryConnection(String host) throws DictConnectionException {
-        this(host, DEFAULT_PORT);
-    }
-
-    /** Sends the final QUIT message and closes the connection with the server. This function ignores any exception that
-     * may happen while sending the message, receiving its reply, or closing the connection.
-     *
-     */
-    public synchronized void close() {
-        try {
-            if (output != null) {
-                output.println("QUIT");
-                //221 bye [d/m/c = 0/0/0; 127.000r 0.000u 0.000s]
-                output.flush();
-            }
-            if (input != null) {
-                input.readLine();
-            }
-        } catch (Exception e) {
-            // Ignore
-        } finally {
-            try { if (input != null) input.close(); } catch (Exception e) { }
-            try { if (output != null) output.close(); } catch (Exception e) { }
-            try { if (socket != null) socket.close(); } catch (Exception e) { }
-            connected = false;
-        }
-    }
-
-    /** Requests and retrieves all definitions for a specific word.
-     *
-     * @param word The word whose definition is to be retrieved.
-     * @param database The database to be used to retrieve the definition. A special database may be specified,
-     *                 indicating either that all regular databases should be used (database name '*'), or that only
-     *                 definitions in the first database that has a definition for the word should be used
-     *                 (database '!').
-     * @return A collection of Definition objects containing all definitions returned by the server.
-     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
-     */
-    public synchronized Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
-        Collection<Definition> set = new ArrayList<>();
-        Definition currentDefinition = null;
-        try {
-            if (output != null) {
-                output.println("DEFINE " + database.getName() + " " + word);
-                output.flush();
-            }
-
-            String firstline = input.readLine();
-            if (firstline.startsWith("552") || firstline.startsWith("550") || firstline.startsWith("551")) {
-                return set;
-            }
-
-            if (firstline == null || !firstline.startsWith("150")) {
-                throw new DictConnectionException("unexpected response: " + firstline);
-            }
-
-            String line;
-            while ((line = input.readLine()) != null) {
-                if (line.startsWith("250")) {
-                    break;
-                }
-
-                if (line.startsWith("151")) {
-                    // Format: 151 "word" dbName "database description"
-                    String[] splits = line.split("\\s", 4);
-                    String serverWord = splits[1].replaceAll("^\"|\"$", "");
-                    String dbName = splits[2];
-                    currentDefinition = new Definition(serverWord, dbName);
-                    set.add(currentDefinition);
-                } else if (currentDefinition != null) {
-                    // server sends: This is a line.\r\n
-                    // inputreadline: "This is a line.\r"
-                    // replaceall: "This is a line."
-                    currentDefinition.appendDefinition(line.replaceAll("\r$", ""));
-                }
-            }
-        } catch (Exception e) {
-            throw new DictConnectionException("Error", e);
-        }
-
-        return set;
-    }
-
-    /** Requests and retrieves a list of matches for a specific word pattern.
-     *
-     * @param word     The word whose definition is to be retrieved.
-     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
-     * @param database The database to be used to retrieve the definition. A special database may be specified,
-     *                 indicating either that all regular databases should be used (database name '*'), or that only
-     *                 matches in the first database that has a match for the word should be used (database '!').
-     * @return A set of word matches returned by the server.
-     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
-     */
-    public synchronized Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
-        Set<String> set = new LinkedHashSet<>();
-
-        try {
-            if (output != null) {
-                output.println("MATCH " + database.getName() + " " + strategy.getName() + " " + word);
-                output.flush();
-            }
-
-            String firstline = input.readLine();
-            if (firstline.startsWith("552") || firstline.startsWith("550") || firstline.startsWith("551")) {
-                return set;
-            }
-
-            if (firstline == null || !firstline.startsWith("152")) {
-                throw new DictConnectionException("unexpected response: " + firstline);
-            }
-
-            String line;
-            while ((line = input.readLine()) != null) {
-                if (line.startsWith("250")) {
-                    break;
-                }
-
-                line = line.trim();
-                if (line.matches("^[^ ]+\\s+\".*\"$")) {
-                    String[] split = line.split("\\s+", 2);
-                    String matchWord = split[1].replaceAll("^\"|\"$", "");
-                    set.add(matchWord);
-                }
-            }
-        } catch (Exception e) {
-            throw new DictConnectionException("Error", e);
-        }
-
-        return set;
-    }
-
-    /** Requests and retrieves a map of database name to an equivalent database object for all valid databases used in the server.
-     *
-     * @return A map of Database objects supported by the server.
-     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
-     */
-    public synchronized Map<String, Database> getDatabaseList() throws DictConnectionException {
-        Map<String, Database> databaseMap = new HashMap<>();
-        try {
-            if (output != null) {
-                output.println("SHOW DATABASES");
-                output.flush();
-            }
-
-            String firstline = input.readLine();
-
-            if (firstline.startsWith("554")) {
-                return databaseMap;
-            }
-
-            if (firstline == null || !firstline.startsWith("110")) {
-                throw new DictConnectionException("unexpected response: " + firstline);
-            }
-
-            String line;
-            while ((line = input.readLine()) != null) {
-                if (line.startsWith("250")) {
-                    break;
-                }
-
-                line = line.trim();
-                if (line.matches("^[^ ]+\\s+\".*\"$")) {
-                    String[] split = line.split("\\s+", 2);
-                    String dbName = split[0];
-                    String dbDescription = split[1].replaceAll("^\"|\"$", "");
-                    databaseMap.put(dbName, new Database(dbName, dbDescription));
-                }
-            }
-
-        } catch (IOException e) {
-            throw new DictConnectionException("Error communicating with server", e);
-        }
-
-        return databaseMap;
-    }
-
-    /** Requests and retrieves a list of all valid matching strategies supported by the server.
-     *
-     * @return A set of MatchingStrategy objects supported by the server.
-     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
-     */
-    public synchronized Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
-        Set<MatchingStrategy> set = new LinkedHashSet<>();
-        try {
-            if (output != null) {
-                output.println("SHOW STRAT");
-                output.flush();
-            }
-
-            String firstline = input.readLine();
-
-            if (firstline.startsWith("555")) {
-                return set;
-            }
-            if (firstline == null || !firstline.startsWith("111")) {
-                throw new DictConnectionException("unexpected response: " + firstline);
-            }
-
-            String line;
-            while ((line = input.readLine()) != null) {
-                if (line.startsWith("250")) {
-                    break;
-                }
-
-                line = line.trim();
-                if (line.matches("^[^ ]+\\s+\".*\"$")) {
-                    String[] split = line.split("\\s+", 2);
-                    String strategyName = split[0];
-                    String strategyDescription = split[1].replaceAll("^\"|\"$", "");
-                    set.add(new MatchingStrategy(strategyName, strategyDescription));
-                }
-            }
-
-        } catch (IOException e) {
-            throw new DictConnectionException("Error communicating with server", e);
-        }
-
-        return set;
-    }
-
-    /** Requests and retrieves detailed information about the currently selected database.
-     *
-     * @return A string containing the information returned by the server in response to a "SHOW INFO <db>" command.
-     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
-     */
-    public synchronized String getDatabaseInfo(Database d) throws DictConnectionException {
-	StringBuilder sb = new StringBuilder();
-
-        try {
-            if (output != null) {
-                output.println("SHOW INFO " + d.getName());
-                output.flush();
-            }
-
-            String firstline = input.readLine();
-            if (firstline == null || !firstline.startsWith("112")) {
-                throw new DictConnectionException("unexpected response: " + firstline);
-            }
-
-            String line;
-            while ((line = input.readLine()) != null) {
-                if (line.startsWith("250")) {
-                    break;
-                }
-                sb.append(line).append("\n");
-            }
-
-            if (sb.length() > 0) {
-                sb.setLength(sb.length() - 1);
-            }
-
-        } catch (IOException e) {
-            throw new DictConnectionException("Error communicating with server", e);
-        }
-
-        return sb.toString();
-    }
-
-    public String getHost() {
-        return host;
-    }
-
-    public int getPort() {
-        return port;
-    }
-
-    public boolean isConnected() {
-        return connected;
-    }
-
-    public BufferedReader getInput() {
-        return input;
-    }
-
-    public PrintWriter getOutput() {
-        return output;
-    }
-
-    public Socket getSocket() {
-        return socket;
-    }
-}
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Created by Jonatan on 2017-09-09.
+ */
+public class DictionaryConnection {
+
+    private static final int DEFAULT_PORT = 2628;
+    private static final int DEFAULT_REPLY_MEMORY_LIMIT = 4 * 1024 * 1024;
+    private static final int PIPELINE_DEPTH = 16;
+    private Socket socket;
+    private ReplyReader input;
+    private PrintWriter output;
+    private String host;
+    private int port;
+    private boolean connected;
+    private int replyMemoryLimit = DEFAULT_REPLY_MEMORY_LIMIT;
+    private ReplyOverflow replyOverflow = ReplyOverflow.SPILL;
+
+    /** Establishes a new connection with a DICT server using an explicit host and port number, and handles initial
+     * welcome messages.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @throws DictConnectionException If the host does not exist, the connection can't be established, or the messages
+     * don't match their expected value.
+     */
+    public DictionaryConnection(String host, int port) throws DictConnectionException {
+        // Not created while Flight Recorder is off, so a short-lived process never loads the event classes
+        ConnectEvent event = CommandTrace.isConnectEnabled() ? new ConnectEvent() : null;
+        if (event != null) {
+            event.host = host;
+            event.port = port;
+            event.begin();
+        }
+        try{
+            socket = new Socket(host, port);
+
+            //writes to server
+            // Commands are UTF-8 like replies, whatever the platform's default encoding
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
+                    true);
+
+            //listens to serve
+            ReplyReader in = new ReplyReader(socket.getInputStream());
+            this.input = in;
+            this.output = out;
+
+            String welcomeMessage = in.readLine();
+            if (welcomeMessage == null) {
+                throw new DictConnectionException("No welcome message received from server");
+            }
+            if (event != null)
+                event.bannerBytes = welcomeMessage.length() + 2;
+
+            //220 dict.dict.org dictd 1.12.1/rf on Linux 4.19.0-10-amd64 <auth.mime> <547903076.14484.1758085096@dict.dict.org>
+            if (!welcomeMessage.startsWith("220")) {
+                // An overloaded dictd greets with 420 or 421 instead, and closes the connection
+                throw unexpected("Unexpected welcome message: ", welcomeMessage);
+            }
+
+            this.host = host;
+            this.port = port;
+            this.connected = true;
+            if (event != null)
+                event.succeeded = true;
+        } catch (DictConnectionException e) {
+            closeQuietly();
+            throw e;
+        } catch (Exception e) {
+            closeQuietly();
+            throw new DictConnectionException("Could not connect to " + host + ":" + port, e);
+        } finally {
+            if (event != null)
+                event.commit();
+        }
+    }
+
+    /** Establishes a new connection with a DICT server using an explicit host, with the default DICT port number, and
+     * handles initial welcome messages.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @throws DictConnectionException If the host does not exist, the connection can't be established, or the messages
+     * don't match their expected value.
+     */
+    public DictionaryConnection(String host) throws DictConnectionException {
+        this(host, DEFAULT_PORT);
+    }
+
+    /** Sends the final QUIT message and closes the connection with the server. This function ignores any exception that
+     * may happen while sending the message, receiving its reply, or closing the connection.
+     *
+     */
+    public synchronized void close() {
+        try {
+            if (output != null) {
+                output.println("QUIT");
+                //221 bye [d/m/c = 0/0/0; 127.000r 0.000u 0.000s]
+                output.flush();
+            }
+            if (input != null) {
+                input.readLine();
+            }
+        } catch (Exception e) {
+            // Ignore
+        } finally {
+            try { if (input != null) input.close(); } catch (Exception e) { }
+            try { if (output != null) output.close(); } catch (Exception e) { }
+            try { if (socket != null) socket.close(); } catch (Exception e) { }
+            connected = false;
+        }
+    }
+
+    /** Closes the socket at once, without QUIT and without waiting for a request in progress on another thread, which
+     * then fails with an I/O error. Used to give up on a connection whose reply never arrives, where {@link #close()}
+     * would wait for that reply first.
+     */
+    public void abort() {
+        closeQuietly();
+    }
+
+    /** Returns the number of bytes received from the server since the connection was established, which tells
+     * whether a failed request got any part of its reply.
+     */
+    long getBytesReceived() {
+        return input.getBytesReceived();
+    }
+
+    private void closeQuietly() {
+        try { if (socket != null) socket.close(); } catch (Exception e) { }
+    }
+
+    private static DictConnectionException unexpectedResponse(String line) {
+        return unexpected("unexpected response: ", line);
+    }
+
+    /** Returns the exception for an unexpected reply line, carrying its status if the line is a status line. */
+    private static DictConnectionException unexpected(String message, String line) {
+        try {
+            return new DictConnectionException(message + line, Status.parse(line));
+        } catch (DictConnectionException e) {
+            return new DictConnectionException(message + line);
+        }
+    }
+
+    /** Requests and retrieves all definitions for a specific word.
+     *
+     * @param word The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition. A special database may be specified,
+     *                 indicating either that all regular databases should be used (database name '*'), or that only
+     *                 definitions in the first database that has a definition for the word should be used
+     *                 (database '!').
+     * @return A collection of Definition objects containing all definitions returned by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        Collection<Definition> set = new ArrayList<>();
+        getDefinitions(word, database, set::add);
+        return set;
+    }
+
+    /** Requests all definitions for a specific word, handing each definition to a consumer as soon as its body has
+     * been received. The consumer is called on the calling thread, while the rest of the reply is still pending.
+     * Definition bodies of one reply share the connection's reply memory limit; text past the limit is discarded and
+     * the affected definitions are flagged as truncated.
+     *
+     * @param word The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition (see {@link #getDefinitions(String, Database)}).
+     * @param consumer Receives each complete Definition, in the order sent by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized void getDefinitions(String word, Database database, Consumer<Definition> consumer) throws DictConnectionException {
+        String request = "DEFINE " + database.getName() + " " + word;
+        CommandTrace trace = new CommandTrace("DEFINE", database.getName(), request);
+        try {
+            if (output != null) {
+                output.println(request);
+                output.flush();
+            }
+            readDefinitions(trace, consumer);
+        } catch (Exception e) {
+            throw new DictConnectionException("Error", e);
+        } finally {
+            trace.end();
+        }
+    }
+
+    /** Requests the definitions of several words, pipelining the requests: up to a fixed number of DEFINE commands are
+     * sent ahead of the replies being read, so a batch costs about one round trip per window instead of one per word.
+     * This is meant for bulk transfers; words are quoted, so headwords containing spaces are requested correctly.
+     *
+     * @param words The words whose definitions are to be retrieved.
+     * @param database The database to be used to retrieve the definitions.
+     * @param consumer Receives each requested word together with each of its definitions, in request order. Words
+     *                 without definitions are not reported.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected
+     * value. The connection should not be used after an error, since replies may still be pending.
+     */
+    public synchronized void getDefinitions(List<String> words, Database database, BiConsumer<String, Definition> consumer)
+            throws DictConnectionException {
+        try {
+            pipelineDefines(Collections.nCopies(words.size(), database), words, () -> false,
+                    i -> definition -> consumer.accept(words.get(i), definition), i -> { });
+        } catch (Exception e) {
+            throw new DictConnectionException("Error", e);
+        }
+    }
+
+    /** Requests the definitions of one word in each of several databases, pipelining the requests as
+     * {@link #getDefinitions(List, Database, BiConsumer)} does. A "*" or "!" lookup spread over several connections
+     * sends each connection's share of the databases this way, so a share costs about one round trip however many
+     * databases it holds.
+     *
+     * @param word The word whose definitions are to be retrieved.
+     * @param databases The databases to be searched, in the order their replies are wanted.
+     * @param consumer Receives each database together with all definitions found in it, once its reply is complete,
+     *                 in the order of databases. Databases without definitions are reported with an empty list.
+     * @param stop Checked before each further request is sent. Once it returns true no more requests are sent; the
+     *             replies to those already sent are still read and reported.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected
+     * value. The connection should not be used after an error, since replies may still be pending.
+     */
+    public synchronized void getDefinitions(String word, List<Database> databases,
+                                            BiConsumer<Database, List<Definition>> consumer, BooleanSupplier stop)
+            throws DictConnectionException {
+        List<List<Definition>> found = new ArrayList<>();
+        try {
+            pipelineDefines(databases, Collections.nCopies(databases.size(), word), stop, i -> {
+                found.add(new ArrayList<>());
+                return found.get(i)::add;
+            }, i -> consumer.accept(databases.get(i), found.get(i)));
+        } catch (Exception e) {
+            throw new DictConnectionException("Error", e);
+        }
+    }
+
+    /** Sends DEFINE requests up to {@value #PIPELINE_DEPTH} ahead of the replies being read, and reads the replies in
+     * order. Request i asks for words.get(i) in databases.get(i); words are quoted, so headwords containing spaces
+     * are requested correctly.
+     *
+     * @param stop Checked before each request is sent; once true, only replies to requests already sent are read.
+     * @param consumers Returns the consumer of the definitions of request i, just before its reply is read.
+     * @param completed Called with i once the reply to request i was read completely.
+     */
+    private void pipelineDefines(List<Database> databases, List<String> words, BooleanSupplier stop,
+                                 IntFunction<Consumer<Definition>> consumers, IntConsumer completed) throws Exception {
+        Deque<CommandTrace> inFlight = new ArrayDeque<>();
+        int sent = 0;
+        for (int received = 0; ; received++) {
+            while (sent < words.size() && sent - received < PIPELINE_DEPTH && !stop.getAsBoolean()) {
+                String name = databases.get(sent).getName();
+                String request = "DEFINE " + name + " " + DictStringParser.quoteAtom(words.get(sent));
+                inFlight.add(new CommandTrace("DEFINE", name, request));
+                output.print(request + "\r\n");
+                sent++;
+            }
+            if (received == sent)
+                return;
+            output.flush();
+
+            CommandTrace trace = inFlight.remove();
+            try {
+                readDefinitions(trace, consumers.apply(received));
+            } finally {
+                trace.end();
+            }
+            completed.accept(received);
+        }
+    }
+
+    /** Reads the reply to a DEFINE command, from its status line to the final 250. */
+    private void readDefinitions(CommandTrace trace, Consumer<Definition> consumer) throws Exception {
+        Definition currentDefinition = null;
+        ReplyBuffer body = null;
+        int remaining = replyMemoryLimit;
+
+        String firstline = trace.readLine(input);
+        if (firstline != null && (firstline.startsWith("552") || firstline.startsWith("550") || firstline.startsWith("551"))) {
+            return;
+        }
+
+        if (firstline == null || !firstline.startsWith("150")) {
+            throw unexpectedResponse(firstline);
+        }
+
+        String line;
+        while ((line = trace.readLine(input)) != null) {
+            if (line.startsWith("250")) {
+                break;
+            }
+
+            if (line.startsWith("151")) {
+                remaining -= completeDefinition(currentDefinition, body, consumer, trace);
+                // Format: 151 "word" dbName "database description"; the word is quoted when it contains spaces
+                String[] atoms = DictStringParser.splitAtoms(line);
+                if (atoms.length < 3)
+                    throw unexpectedResponse(line);
+                String serverWord = atoms[1];
+                String dbName = atoms[2];
+                currentDefinition = new Definition(serverWord, dbName);
+                body = new ReplyBuffer(remaining, ReplyOverflow.TRUNCATE);
+                trace.beginDefinition(serverWord, dbName);
+            } else if (currentDefinition != null) {
+                // Lines are joined here and normalized once, instead of re-normalizing the whole body per line
+                body.appendLine(line);
+            }
+        }
+        completeDefinition(currentDefinition, body, consumer, trace);
+    }
+
+    /** Hands a definition to its consumer once its body is complete, returning the number of characters it keeps. */
+    private static int completeDefinition(Definition definition, ReplyBuffer body, Consumer<Definition> consumer,
+                                          CommandTrace trace) throws IOException {
+        if (definition == null)
+            return 0;
+        ReplyText text = body.build();
+        if (text.length() > 0)
+            definition.setDefinition(text.toString());
+        definition.setTruncated(text.isTruncated());
+        trace.endDefinition();
+        consumer.accept(definition);
+        return text.length();
+    }
+
+    /** Requests and retrieves a list of matches for a specific word pattern.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
+     * @param database The database to be used to retrieve the definition. A special database may be specified,
+     *                 indicating either that all regular databases should be used (database name '*'), or that only
+     *                 matches in the first database that has a match for the word should be used (database '!').
+     * @return A set of word matches returned by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return getMatchList(word, strategy, database, Integer.MAX_VALUE);
+    }
+
+    /** Requests a list of matches for a specific word pattern, keeping only the first matches. Once the limit is
+     * reached, the rest of the reply is skipped without being parsed, so a short prefix matching thousands of
+     * headwords costs little more than one matching a few.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
+     * @param database The database to be used to retrieve the definition (see
+     *                 {@link #getMatchList(String, MatchingStrategy, Database)}).
+     * @param limit    The maximum number of distinct matches returned.
+     * @return A set of at most limit word matches, in the order returned by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized Set<String> getMatchList(String word, MatchingStrategy strategy, Database database, int limit)
+            throws DictConnectionException {
+        Set<String> set = new LinkedHashSet<>();
+        String request = "MATCH " + database.getName() + " " + strategy.getName() + " " + word;
+        CommandTrace trace = new CommandTrace("MATCH", database.getName(), request);
+
+        try {
+            if (output != null) {
+                output.println(request);
+                output.flush();
+            }
+
+            String firstline = trace.readLine(input);
+            if (firstline != null && (firstline.startsWith("552") || firstline.startsWith("550") || firstline.startsWith("551"))) {
+                return set;
+            }
+
+            if (firstline == null || !firstline.startsWith("152")) {
+                throw unexpectedResponse(firstline);
+            }
+            if (limit <= 0)
+                trace.skipText(input);
+
+            String line;
+            while ((line = trace.readLine(input)) != null) {
+                if (line.startsWith("250")) {
+                    break;
+                }
+
+                line = line.trim();
+                if (line.matches("^[^ ]+\\s+\".*\"$")) {
+                    String[] split = line.split("\\s+", 2);
+                    String matchWord = split[1].replaceAll("^\"|\"$", "");
+                    if (set.add(matchWord) && set.size() >= limit)
+                        trace.skipText(input);
+                }
+            }
+        } catch (Exception e) {
+            throw new DictConnectionException("Error", e);
+        } finally {
+            trace.end();
+        }
+
+        return set;
+    }
+
+    /** Requests and retrieves a map of database name to an equivalent database object for all valid databases used in the server.
+     *
+     * @return A map of Database objects supported by the server, iterating in the order the server lists them, which
+     * is also the order in which "*" and "!" search them.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized Map<String, Database> getDatabaseList() throws DictConnectionException {
+        Map<String, Database> databaseMap = new LinkedHashMap<>();
+        CommandTrace trace = new CommandTrace("SHOW DATABASES", null, "SHOW DATABASES");
+        try {
+            if (output != null) {
+                output.println("SHOW DATABASES");
+                output.flush();
+            }
+
+            String firstline = trace.readLine(input);
+
+            if (firstline != null && firstline.startsWith("554")) {
+                return databaseMap;
+            }
+
+            if (firstline == null || !firstline.startsWith("110")) {
+                throw unexpectedResponse(firstline);
+            }
+
+            String line;
+            while ((line = trace.readLine(input)) != null) {
+                if (line.startsWith("250")) {
+                    break;
+                }
+
+                line = line.trim();
+                if (line.matches("^[^ ]+\\s+\".*\"$")) {
+                    String[] split = line.split("\\s+", 2);
+                    String dbName = split[0];
+                    String dbDescription = split[1].replaceAll("^\"|\"$", "");
+                    databaseMap.put(dbName, new Database(dbName, dbDescription));
+                }
+            }
+
+        } catch (IOException e) {
+            throw new DictConnectionException("Error communicating with server", e);
+        } finally {
+            trace.end();
+        }
+
+        return databaseMap;
+    }
+
+    /** Requests and retrieves a list of all valid matching strategies supported by the server.
+     *
+     * @return A set of MatchingStrategy objects supported by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        Set<MatchingStrategy> set = new LinkedHashSet<>();
+        CommandTrace trace = new CommandTrace("SHOW STRAT", null, "SHOW STRAT");
+        try {
+            if (output != null) {
+                output.println("SHOW STRAT");
+                output.flush();
+            }
+
+            String firstline = trace.readLine(input);
+
+            if (firstline != null && firstline.startsWith("555")) {
+                return set;
+            }
+            if (firstline == null || !firstline.startsWith("111")) {
+                throw unexpectedResponse(firstline);
+            }
+
+            String line;
+            while ((line = trace.readLine(input)) != null) {
+                if (line.startsWith("250")) {
+                    break;
+                }
+
+                line = line.trim();
+                if (line.matches("^[^ ]+\\s+\".*\"$")) {
+                    String[] split = line.split("\\s+", 2);
+                    String strategyName = split[0];
+                    String strategyDescription = split[1].replaceAll("^\"|\"$", "");
+                    set.add(new MatchingStrategy(strategyName, strategyDescription));
+                }
+            }
+
+        } catch (IOException e) {
+            throw new DictConnectionException("Error communicating with server", e);
+        } finally {
+            trace.end();
+        }
+
+        return set;
+    }
+
+    /** Requests and retrieves detailed information about the currently selected database. Text past the connection's
+     * reply memory limit is discarded.
+     *
+     * @return A string containing the information returned by the server in response to a "SHOW INFO <db>" command.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public String getDatabaseInfo(Database d) throws DictConnectionException {
+        return readDatabaseInfo(d, ReplyOverflow.TRUNCATE).toString();
+    }
+
+    /** Requests detailed information about a database, applying the connection's overflow policy if the text goes
+     * past the reply memory limit. Unlike {@link #getDatabaseInfo(Database)}, this can return text that does not fit
+     * in memory, spilled to a temporary file.
+     *
+     * @return The information returned by the server in response to a "SHOW INFO <db>" command.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public ReplyText getDatabaseInfoText(Database d) throws DictConnectionException {
+        return readDatabaseInfo(d, replyOverflow);
+    }
+
+    private synchronized ReplyText readDatabaseInfo(Database d, ReplyOverflow overflow) throws DictConnectionException {
+        ReplyBuffer sb = new ReplyBuffer(replyMemoryLimit, overflow);
+        String request = "SHOW INFO " + d.getName();
+        CommandTrace trace = new CommandTrace("SHOW INFO", d.getName(), request);
+
+        try {
+            if (output != null) {
+                output.println(request);
+                output.flush();
+            }
+
+            String firstline = trace.readLine(input);
+            if (firstline == null || !firstline.startsWith("112")) {
+                throw unexpectedResponse(firstline);
+            }
+
+            String line;
+            while ((line = trace.readLine(input)) != null) {
+                if (line.startsWith("250")) {
+                    break;
+                }
+                sb.appendLine(line);
+            }
+
+            return sb.build();
+        } catch (IOException e) {
+            sb.discard();
+            throw new DictConnectionException("Error communicating with server", e);
+        } catch (DictConnectionException e) {
+            sb.discard();
+            throw e;
+        } finally {
+            trace.end();
+        }
+    }
+
+    /** Sends a STATUS command and waits for its reply. This is the cheapest request supported by the protocol, and
+     * is used to keep idle sessions open and to verify that a connection is still usable.
+     *
+     * @return The details of the status line returned by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized String getServerStatus() throws DictConnectionException {
+        CommandTrace trace = new CommandTrace("STATUS", null, "STATUS");
+        try {
+            output.println("STATUS");
+            output.flush();
+
+            String line = trace.readLine(input);
+            if (line == null || !line.startsWith("210")) {
+                throw unexpectedResponse(line);
+            }
+            return line.substring(3).trim();
+        } catch (IOException e) {
+            throw new DictConnectionException("Error communicating with server", e);
+        } finally {
+            trace.end();
+        }
+    }
+
+    /** Sets how long a read may block waiting for the server before failing. A half-open socket, where the server has
+     * gone away without closing the connection, is then reported as an error instead of blocking forever.
+     *
+     * @param millis The timeout in milliseconds, or 0 to wait indefinitely.
+     * @throws DictConnectionException If the timeout could not be set on the underlying socket.
+     */
+    public void setReadTimeout(int millis) throws DictConnectionException {
+        try {
+            socket.setSoTimeout(millis);
+        } catch (IOException e) {
+            throw new DictConnectionException("Error configuring connection", e);
+        }
+    }
+
+    /** Limits the amount of reply text kept in memory. Replies are still read to the end past the limit, so the
+     * connection stays usable; the extra text is handled according to the overflow policy.
+     *
+     * @param maxChars The maximum number of characters of a single reply held in memory.
+     * @param overflow What happens to text past the limit. Only applies to replies returned as {@link ReplyText};
+     *                 definition bodies are always truncated.
+     */
+    public synchronized void setReplyMemoryLimit(int maxChars, ReplyOverflow overflow) {
+        this.replyMemoryLimit = maxChars;
+        this.replyOverflow = overflow;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public BufferedReader getInput() {
+        return input;
+    }
+
+    public PrintWriter getOutput() {
+        return output;
+    }
+
+    public Socket getSocket() {
+        return socket;
+    }
+}
@@ -0,0 +1,243 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs "*" and "!" DEFINE lookups as one request per database, spread over the connections of a pool. A server answers
+ * "*" by searching each database in turn on a single session, so the latency is the sum of all lookups; here each of
+ * k connections searches a share of the n databases, so the server works through about n/k lookups per session. Each
+ * connection pipelines the requests of its share, so a share costs about one round trip however many databases it
+ * holds. Databases are dealt out to the connections in turn, so the first databases are searched first on every
+ * connection, and results are merged back in the order the server lists its databases, which is the order the server
+ * itself would have used.
+ *
+ * MATCH requests, which are small and sent for every keystroke, are always sent as one request on one connection.
+ * Requests for a specific database are sent as they are.
+ */
+public class FanOutClient {
+
+    private final ConnectionPool pool;
+    private final ExecutorService executor;
+
+    /** @param pool The pool whose connections carry the per-database requests. */
+    public FanOutClient(ConnectionPool pool) {
+        this.pool = pool;
+        this.executor = Executors.newFixedThreadPool(pool.getMaxSize(), r -> {
+            Thread thread = new Thread(r, "dict-fanout-" + pool.getHost());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Retrieves all definitions for a word, as {@link DictionaryConnection#getDefinitions(String, Database)}.
+     */
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        Collection<Definition> definitions = new ArrayList<>();
+        getDefinitions(word, database, definitions::add);
+        return definitions;
+    }
+
+    /** Retrieves all definitions for a word, handing them to a consumer in server database order. Definitions from a
+     * database are delivered as soon as it and every database before it have answered. For "!", only the first
+     * database with definitions is used, and requests that have not been sent yet are dropped once it is known.
+     *
+     * @param word The word whose definition is to be retrieved.
+     * @param database The database to be searched, or "*" or "!".
+     * @param consumer Receives each definition, on the calling thread.
+     * @throws DictConnectionException If any of the lookups failed.
+     */
+    public void getDefinitions(String word, Database database, Consumer<Definition> consumer) throws DictConnectionException {
+        List<Database> databases = isMultiDatabase(database) ? pool.getSearchableDatabases() : List.of();
+        if (databases.isEmpty()) {
+            pool.execute(c -> {
+                c.getDefinitions(word, database, consumer);
+                return null;
+            });
+            return;
+        }
+        fanOut(word, database, databases, consumer, 0, null);
+    }
+
+    /** Retrieves all definitions for a word as {@link #getDefinitions(String, Database, Consumer)}, giving up once the
+     * timeout expires. Lookups still running then are left to finish in the background, so their connections go back
+     * to the pool with the reply fully read; the consumer is not called for them.
+     *
+     * @param timeout The time to wait for all definitions.
+     * @throws DictConnectionException If any of the lookups failed, or a {@link RequestTimeoutException} if they did
+     * not all finish within the timeout.
+     */
+    public void getDefinitions(String word, Database database, Consumer<Definition> consumer, Duration timeout)
+            throws DictConnectionException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<Database> databases = isMultiDatabase(database) ? pool.getSearchableDatabases() : List.of();
+        if (databases.isEmpty()) {
+            // The request runs on a worker thread, which hands definitions over as they arrive
+            BlockingQueue<Optional<Definition>> handoff = new LinkedBlockingQueue<>();
+            Future<Void> request = executor.submit(() -> {
+                try {
+                    return pool.execute(c -> {
+                        c.getDefinitions(word, database, d -> handoff.add(Optional.of(d)));
+                        return null;
+                    });
+                } finally {
+                    handoff.add(Optional.empty());
+                }
+            });
+            try {
+                Optional<Definition> next;
+                while ((next = poll(handoff, deadline, timeout)).isPresent())
+                    consumer.accept(next.get());
+                await(request, deadline, timeout);
+            } finally {
+                request.cancel(false);
+            }
+            return;
+        }
+        fanOut(word, database, databases, consumer, deadline, timeout);
+    }
+
+    /** Retrieves matches for a word, as {@link DictionaryConnection#getMatchList(String, MatchingStrategy, Database)},
+     * on a single pooled connection.
+     */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return getMatchList(word, strategy, database, Integer.MAX_VALUE);
+    }
+
+    /** Retrieves at most limit matches for a word, as
+     * {@link DictionaryConnection#getMatchList(String, MatchingStrategy, Database, int)}, on a single pooled
+     * connection. "*" and "!" are sent to the server as they are: a MATCH reply is a list of short lines, so the
+     * server searching its databases costs less than a round trip per database.
+     */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database, int limit)
+            throws DictConnectionException {
+        return pool.execute(c -> c.getMatchList(word, strategy, database, limit));
+    }
+
+    /** Stops the worker threads and closes the pool.
+     */
+    public void close() {
+        executor.shutdownNow();
+        pool.close();
+    }
+
+    /** Spreads a "*" or "!" lookup over the connections of the pool, and delivers the results in server order.
+     *
+     * @param timeout The time to wait for all definitions, counted up to deadline, or null to wait as long as needed.
+     */
+    private void fanOut(String word, Database database, List<Database> databases, Consumer<Definition> consumer,
+                        long deadline, Duration timeout) throws DictConnectionException {
+        boolean firstMatch = database.getName().equals("!");
+        int connections = Math.min(pool.getMaxSize(), databases.size());
+        List<CompletableFuture<List<Definition>>> results = new ArrayList<>();
+        for (int i = 0; i < databases.size(); i++)
+            results.add(new CompletableFuture<>());
+
+        // Requests not sent yet are dropped once the results are no longer wanted
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<?>> shares = new ArrayList<>();
+        for (int first = 0; first < connections; first++) {
+            List<Database> share = new ArrayList<>();
+            List<CompletableFuture<List<Definition>>> shareResults = new ArrayList<>();
+            for (int i = first; i < databases.size(); i += connections) {
+                share.add(databases.get(i));
+                shareResults.add(results.get(i));
+            }
+            shares.add(executor.submit(() -> lookUp(word, share, shareResults, stop)));
+        }
+
+        try {
+            for (CompletableFuture<List<Definition>> result : results) {
+                List<Definition> definitions = timeout == null ? await(result) : await(result, deadline, timeout);
+                definitions.forEach(consumer);
+                if (firstMatch && !definitions.isEmpty())
+                    break;
+            }
+        } finally {
+            stop.set(true);
+            cancelAll(shares);
+        }
+    }
+
+    /** Looks up a word in a share of the databases, pipelined on one pooled connection, completing the result of each
+     * database as its reply arrives. If the request fails, the results still pending fail with it.
+     */
+    private void lookUp(String word, List<Database> share, List<CompletableFuture<List<Definition>>> results,
+                        AtomicBoolean stop) {
+        int[] next = {0};
+        try {
+            pool.execute(c -> {
+                c.getDefinitions(word, share, (db, definitions) -> results.get(next[0]++).complete(definitions),
+                        stop::get);
+                return null;
+            });
+        } catch (DictConnectionException | RuntimeException e) {
+            for (CompletableFuture<List<Definition>> result : results)
+                result.completeExceptionally(e);
+        }
+    }
+
+    private static boolean isMultiDatabase(Database database) {
+        return database.getName().equals("*") || database.getName().equals("!");
+    }
+
+    private static <T> T await(Future<T> lookup) throws DictConnectionException {
+        try {
+            return lookup.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("Interrupted while waiting for lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DictConnectionException)
+                throw (DictConnectionException) e.getCause();
+            throw new DictConnectionException("Error", e.getCause());
+        }
+    }
+
+    private <T> T await(Future<T> lookup, long deadline, Duration timeout) throws DictConnectionException {
+        try {
+            return lookup.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw timedOut(timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("Interrupted while waiting for lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DictConnectionException)
+                throw (DictConnectionException) e.getCause();
+            throw new DictConnectionException("Error", e.getCause());
+        }
+    }
+
+    private <T> T poll(BlockingQueue<T> handoff, long deadline, Duration timeout) throws DictConnectionException {
+        try {
+            T next = handoff.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null)
+                throw timedOut(timeout, null);
+            return next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("Interrupted while waiting for lookup", e);
+        }
+    }
+
+    private RequestTimeoutException timedOut(Duration timeout, Throwable cause) {
+        return new RequestTimeoutException("No reply from " + pool.getHost() + " within " + timeout.toMillis()
+                + " ms", cause);
+    }
+
+    /** Cancels lookups that have not started. Lookups already running are left to read the replies to the requests
+     * they sent, so their connections go back to the pool with the replies fully read.
+     */
+    private static void cancelAll(List<? extends Future<?>> lookups) {
+        for (Future<?> lookup : lookups)
+            lookup.cancel(false);
+    }
+}
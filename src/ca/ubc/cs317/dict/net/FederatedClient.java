@@ -0,0 +1,401 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Looks words up on several DICT servers at once, as if they were one server. Each server has its own
+ * {@link ConnectionPool}, and a lookup sends one request to every server in parallel, so its latency is that of the
+ * slowest server rather than the sum of all of them.
+ *
+ * Database names are only unique within a server, so databases are listed with names qualified by their server, as
+ * in "wn@dict.org" or "wn@localhost:2629". A lookup in a qualified database goes to that server only; "*", "!" and
+ * unqualified names go to every server. Servers often mirror the same databases, so definitions whose bodies are
+ * identical, apart from whitespace, are only delivered once, whichever server sent them first.
+ *
+ * A server that fails is left out of the result; a lookup only fails if every server it was sent to failed.
+ */
+public class FederatedClient {
+
+    private static final int DEFAULT_PORT = 2628;
+    private static final char QUALIFIER = '@';
+
+    private final List<ConnectionPool> servers;
+    private final ExecutorService executor;
+
+    /** @param servers The pools of the servers to be searched, in the order their results are preferred for "!". */
+    public FederatedClient(List<ConnectionPool> servers) {
+        this.servers = List.copyOf(servers);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "dict-federated");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Returns the databases of all servers, with qualified names, in server order and then in the order each server
+     * lists them.
+     *
+     * @throws DictConnectionException If no server could be reached.
+     */
+    public Map<String, Database> getDatabaseList() throws DictConnectionException {
+        List<Future<Map<String, Database>>> lookups = new ArrayList<>();
+        for (ConnectionPool server : servers)
+            lookups.add(executor.submit(() -> server.execute(DictionaryConnection::getDatabaseList)));
+
+        Map<String, Database> databases = new LinkedHashMap<>();
+        Failures failures = new Failures(servers.size());
+        for (int i = 0; i < servers.size(); i++) {
+            try {
+                for (Database database : await(lookups.get(i)).values()) {
+                    String name = qualify(database.getName(), servers.get(i));
+                    databases.put(name, new Database(name, database.getDescription()));
+                }
+            } catch (DictConnectionException e) {
+                failures.add(e);
+            }
+        }
+        failures.throwIfAllFailed();
+        return databases;
+    }
+
+    /** Returns the matching strategies supported by any of the servers, each listed once.
+     *
+     * @throws DictConnectionException If no server could be reached.
+     */
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        List<Future<Set<MatchingStrategy>>> lookups = new ArrayList<>();
+        for (ConnectionPool server : servers)
+            lookups.add(executor.submit(() -> server.execute(DictionaryConnection::getStrategyList)));
+
+        Map<String, MatchingStrategy> strategies = new LinkedHashMap<>();
+        Failures failures = new Failures(servers.size());
+        for (Future<Set<MatchingStrategy>> lookup : lookups) {
+            try {
+                for (MatchingStrategy strategy : await(lookup))
+                    strategies.putIfAbsent(strategy.getName(), strategy);
+            } catch (DictConnectionException e) {
+                failures.add(e);
+            }
+        }
+        failures.throwIfAllFailed();
+        return new LinkedHashSet<>(strategies.values());
+    }
+
+    /** Retrieves all definitions for a word from the servers, as
+     * {@link DictionaryConnection#getDefinitions(String, Database)}.
+     */
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        Collection<Definition> definitions = new ArrayList<>();
+        getDefinitions(word, database, definitions::add);
+        return definitions;
+    }
+
+    /** Retrieves all definitions for a word, handing them to a consumer as they arrive from any server, with
+     * qualified database names. Definitions of a server arrive in its own order, but servers are not waited for
+     * each other. For "!", the definitions come from the first server, in configured order, that has any.
+     *
+     * @param word The word whose definition is to be retrieved.
+     * @param database A qualified database name, an unqualified one to search it on every server, or "*" or "!".
+     * @param consumer Receives each distinct definition, on the calling thread.
+     * @throws DictConnectionException If the database names an unknown server, or every server failed.
+     */
+    public void getDefinitions(String word, Database database, Consumer<Definition> consumer)
+            throws DictConnectionException {
+        List<Target> targets = targets(database);
+        if (database.getName().equals("!")) {
+            getFirstDefinitions(word, targets, consumer);
+            return;
+        }
+
+        BlockingQueue<Arrival> arrivals = new LinkedBlockingQueue<>();
+        List<Future<?>> lookups = new ArrayList<>();
+        for (Target target : targets) {
+            lookups.add(executor.submit(() -> {
+                try {
+                    target.server.execute(c -> {
+                        c.getDefinitions(word, target.database,
+                                definition -> arrivals.add(new Arrival(target.qualify(definition), null)));
+                        return null;
+                    });
+                    arrivals.add(new Arrival(null, null));
+                } catch (DictConnectionException | RuntimeException e) {
+                    arrivals.add(new Arrival(null, e instanceof DictConnectionException
+                            ? (DictConnectionException) e : new DictConnectionException("Error", e)));
+                }
+            }));
+        }
+
+        Deduplicator seen = new Deduplicator();
+        Failures failures = new Failures(targets.size());
+        try {
+            for (int finished = 0; finished < targets.size(); ) {
+                Arrival arrival = arrivals.take();
+                if (arrival.definition != null) {
+                    if (seen.add(arrival.definition))
+                        consumer.accept(arrival.definition);
+                } else {
+                    finished++;
+                    if (arrival.failure != null)
+                        failures.add(arrival.failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("Interrupted while waiting for lookup", e);
+        } finally {
+            for (Future<?> lookup : lookups)
+                lookup.cancel(false);
+        }
+        failures.throwIfAllFailed();
+    }
+
+    private void getFirstDefinitions(String word, List<Target> targets, Consumer<Definition> consumer)
+            throws DictConnectionException {
+        List<Future<Collection<Definition>>> lookups = new ArrayList<>();
+        for (Target target : targets)
+            lookups.add(executor.submit(() -> target.server.getDefinitions(word, target.database)));
+
+        Failures failures = new Failures(targets.size());
+        try {
+            for (int i = 0; i < targets.size(); i++) {
+                Collection<Definition> definitions;
+                try {
+                    definitions = await(lookups.get(i));
+                } catch (DictConnectionException e) {
+                    failures.add(e);
+                    continue;
+                }
+                if (!definitions.isEmpty()) {
+                    Deduplicator seen = new Deduplicator();
+                    for (Definition definition : definitions) {
+                        Definition qualified = targets.get(i).qualify(definition);
+                        if (seen.add(qualified))
+                            consumer.accept(qualified);
+                    }
+                    return;
+                }
+            }
+        } finally {
+            for (Future<?> lookup : lookups)
+                lookup.cancel(false);
+        }
+        failures.throwIfAllFailed();
+    }
+
+    /** Retrieves at most limit matches for a word from the servers, as
+     * {@link DictionaryConnection#getMatchList(String, MatchingStrategy, Database, int)}. Matches are merged in the
+     * order the servers answer, a word found on several servers is listed once, and the merge returns as soon as
+     * enough matches are known, without waiting for the remaining servers. For "!", only the matches of the first
+     * server, in configured order, with any are returned.
+     *
+     * @throws DictConnectionException If the database names an unknown server, or every server failed.
+     */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database, int limit)
+            throws DictConnectionException {
+        List<Target> targets = targets(database);
+        CompletionService<Set<String>> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Set<String>>> lookups = new ArrayList<>();
+        for (Target target : targets)
+            lookups.add(completion.submit(() ->
+                    target.server.execute(c -> c.getMatchList(word, strategy, target.database, limit))));
+
+        Set<String> matches = new LinkedHashSet<>();
+        Failures failures = new Failures(targets.size());
+        try {
+            if (database.getName().equals("!")) {
+                for (Future<Set<String>> lookup : lookups) {
+                    try {
+                        Set<String> found = await(lookup);
+                        if (!found.isEmpty())
+                            return limit(found, limit);
+                    } catch (DictConnectionException e) {
+                        failures.add(e);
+                    }
+                }
+            } else {
+                for (int i = 0; i < targets.size() && matches.size() < limit; i++) {
+                    try {
+                        matches.addAll(await(completion.take()));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new DictConnectionException("Interrupted while waiting for lookup", e);
+                    } catch (DictConnectionException e) {
+                        failures.add(e);
+                    }
+                }
+            }
+        } finally {
+            for (Future<?> lookup : lookups)
+                lookup.cancel(false);
+        }
+        failures.throwIfAllFailed();
+        return limit(matches, limit);
+    }
+
+    /** Retrieves the information text of a database on its server.
+     *
+     * @param database A qualified database name.
+     * @throws DictConnectionException If the name is not qualified with a known server, or the request failed.
+     */
+    public String getDatabaseInfo(Database database) throws DictConnectionException {
+        List<Target> targets = targets(database);
+        if (targets.size() != 1)
+            throw new DictConnectionException("No server given for database " + database.getName());
+        Target target = targets.get(0);
+        return target.server.execute(c -> c.getDatabaseInfo(target.database));
+    }
+
+    /** Stops the worker threads and closes the pools of all servers.
+     */
+    public void close() {
+        executor.shutdownNow();
+        for (ConnectionPool server : servers)
+            server.close();
+    }
+
+    /** Returns the name of a database qualified with its server's host, and port unless it is the default one. */
+    static String qualify(String databaseName, ConnectionPool server) {
+        return databaseName + QUALIFIER + serverName(server);
+    }
+
+    private static String serverName(ConnectionPool server) {
+        return server.getPort() == DEFAULT_PORT ? server.getHost() : server.getHost() + ":" + server.getPort();
+    }
+
+    /** Resolves the database of a lookup into the servers it is sent to and the database name each of them knows. */
+    private List<Target> targets(Database database) throws DictConnectionException {
+        String name = database.getName();
+        int qualifier = name.lastIndexOf(QUALIFIER);
+        List<Target> targets = new ArrayList<>();
+        if (qualifier < 0) {
+            for (ConnectionPool server : servers)
+                targets.add(new Target(server, database));
+            return targets;
+        }
+
+        String serverName = name.substring(qualifier + 1);
+        Database local = new Database(name.substring(0, qualifier), database.getDescription());
+        for (ConnectionPool server : servers) {
+            if (serverName(server).equals(serverName))
+                targets.add(new Target(server, local));
+        }
+        if (targets.isEmpty())
+            throw new DictConnectionException("Unknown server " + serverName);
+        return targets;
+    }
+
+    private static Set<String> limit(Set<String> matches, int limit) {
+        if (matches.size() <= limit)
+            return matches;
+        Set<String> first = new LinkedHashSet<>();
+        for (String match : matches) {
+            if (first.size() >= limit)
+                break;
+            first.add(match);
+        }
+        return first;
+    }
+
+    private static <T> T await(Future<T> lookup) throws DictConnectionException {
+        try {
+            return lookup.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("Interrupted while waiting for lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DictConnectionException)
+                throw (DictConnectionException) e.getCause();
+            throw new DictConnectionException("Error", e.getCause());
+        }
+    }
+
+    private static class Target {
+        private final ConnectionPool server;
+        private final Database database;
+
+        Target(ConnectionPool server, Database database) {
+            this.server = server;
+            this.database = database;
+        }
+
+        /** Returns a copy of a definition from this target's server, with its database name qualified. */
+        Definition qualify(Definition definition) {
+            Definition qualified = new Definition(definition.getWord(),
+                    FederatedClient.qualify(definition.getDatabaseName(), server));
+            if (definition.getDefinition() != null)
+                qualified.setDefinition(definition.getDefinition());
+            qualified.setTruncated(definition.isTruncated());
+            return qualified;
+        }
+    }
+
+    /** A definition received from a server, or the end of a server's reply, possibly with the error that ended it. */
+    private static class Arrival {
+        private final Definition definition;
+        private final DictConnectionException failure;
+
+        Arrival(Definition definition, DictConnectionException failure) {
+            this.definition = definition;
+            this.failure = failure;
+        }
+    }
+
+    /** Recognizes definitions whose bodies were already delivered, by a SHA-256 hash of the body with whitespace
+     * collapsed, since mirrors of the same database may wrap or indent it differently.
+     */
+    private static class Deduplicator {
+        private final Set<ByteBuffer> hashes = new HashSet<>();
+        private final MessageDigest digest;
+
+        Deduplicator() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** Returns true if no definition with the same body was added before. */
+        boolean add(Definition definition) {
+            String body = definition.getDefinition();
+            if (body == null)
+                return true;
+            String normalized = String.join(" ", body.trim().split("\\s+"));
+            return hashes.add(ByteBuffer.wrap(digest.digest(normalized.getBytes(StandardCharsets.UTF_8))));
+        }
+    }
+
+    /** Collects the failures of a lookup's servers, to fail it only if none of them answered. */
+    private static class Failures {
+        private final int attempted;
+        private final List<DictConnectionException> failures = new ArrayList<>();
+
+        Failures(int attempted) {
+            this.attempted = attempted;
+        }
+
+        void add(DictConnectionException failure) {
+            failures.add(failure);
+        }
+
+        void throwIfAllFailed() throws DictConnectionException {
+            if (attempted == 0 || failures.size() < attempted)
+                return;
+            DictConnectionException first = failures.get(0);
+            for (int i = 1; i < failures.size(); i++)
+                first.addSuppressed(failures.get(i));
+            throw first;
+        }
+    }
+}
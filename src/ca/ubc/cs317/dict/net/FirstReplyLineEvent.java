@@ -0,0 +1,27 @@
+package ca.ubc.cs317.dict.net;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the wait between sending a command and receiving the first line of its reply, which
+ * is the server's processing time plus one network round trip.
+ */
+@Name("ca.ubc.cs317.dict.FirstReplyLine")
+@Label("DICT Time to First Reply Line")
+@Description("Time between sending a command and reading the first line of its reply")
+@Category({"DICT Client", "Protocol"})
+class FirstReplyLineEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Database")
+    String database;
+
+    @Label("Status")
+    int status;
+}
@@ -0,0 +1,646 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * A DICT session that survives the server dropping idle connections. Idle sessions are kept open with periodic STATUS
+ * commands, reads fail after a timeout instead of hanging on half-open sockets, and a second, already greeted
+ * connection is kept on standby. When the active session fails it is replaced by the standby one and the request is
+ * retried, which is safe since every command sent by this client is idempotent.
+ *
+ * Every request also has a variant taking a timeout. Such a request runs on a separate thread while the caller waits
+ * for it; when the timeout expires first, the caller gets an exception at once and the request is abandoned. Its
+ * session is replaced by the standby one, so later requests don't queue behind the slow reply, and the abandoned
+ * request goes on reading that reply in the background. If it finishes within the drain budget, the session is still
+ * in sync and is kept as the standby; otherwise its socket is closed.
+ */
+public class ManagedConnection {
+
+    private static final int DEFAULT_PORT = 2628;
+    private static final long DEFAULT_KEEPALIVE_MILLIS = 30000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 15000;
+    private static final Duration DEFAULT_DRAIN_BUDGET = Duration.ofSeconds(10);
+
+    private final String host;
+    private final int port;
+    private final long keepAliveMillis;
+    private final int readTimeoutMillis;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService requests;
+    private volatile Duration drainBudget = DEFAULT_DRAIN_BUDGET;
+
+    private DictionaryConnection active;
+    private DictionaryConnection standby;
+    private boolean standbyPending;
+    private int inFlight;
+    private final Set<DictionaryConnection> draining = new HashSet<>();
+    private volatile long lastActivity;
+    private volatile boolean closed;
+
+    /** Establishes a managed session with a DICT server, using default keepalive and timeout settings.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @throws DictConnectionException If the initial connection can't be established.
+     */
+    public ManagedConnection(String host, int port) throws DictConnectionException {
+        this(host, port, DEFAULT_KEEPALIVE_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /** Establishes a managed session with a DICT server, using the default DICT port number.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @throws DictConnectionException If the initial connection can't be established.
+     */
+    public ManagedConnection(String host) throws DictConnectionException {
+        this(host, DEFAULT_PORT);
+    }
+
+    /** Establishes a managed session with a DICT server.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @param keepAliveMillis Time a session may stay idle before a STATUS command is sent on it.
+     * @param readTimeoutMillis Time a read may block before the session is considered dead.
+     * @throws DictConnectionException If the initial connection can't be established.
+     */
+    public ManagedConnection(String host, int port, long keepAliveMillis, int readTimeoutMillis)
+            throws DictConnectionException {
+        this.host = host;
+        this.port = port;
+        this.keepAliveMillis = keepAliveMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.active = open();
+        this.lastActivity = System.currentTimeMillis();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dict-keepalive-" + host);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.requests = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "dict-request-" + host);
+            thread.setDaemon(true);
+            return thread;
+        });
+        prepareStandby();
+        scheduler.scheduleWithFixedDelay(this::keepAlive, keepAliveMillis, keepAliveMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** See {@link DictionaryConnection#getDefinitions(String, Database)}. */
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return execute(c -> c.getDefinitions(word, database));
+    }
+
+    /** See {@link DictionaryConnection#getDefinitions(String, Database, Consumer)}. The request is only retried on a
+     * new session if no definition was handed to the consumer yet, so the consumer never sees a definition twice.
+     */
+    public void getDefinitions(String word, Database database, Consumer<Definition> consumer) throws DictConnectionException {
+        boolean[] delivered = new boolean[1];
+        execute(streamDefinitions(word, database, consumer, delivered), () -> !delivered[0]);
+    }
+
+    /** See {@link DictionaryConnection#getDefinitions(String, Database)}.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public Collection<Definition> getDefinitions(String word, Database database, Duration timeout)
+            throws DictConnectionException {
+        return execute(c -> c.getDefinitions(word, database), timeout);
+    }
+
+    /** See {@link #getDefinitions(String, Database, Consumer)}. The consumer is called on a request thread, and is not
+     * called any more once the timeout has been reported; definitions received before that are not taken back.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public void getDefinitions(String word, Database database, Consumer<Definition> consumer, Duration timeout)
+            throws DictConnectionException {
+        boolean[] delivered = new boolean[1];
+        Request<Void> request = new Request<>();
+        request.await(streamDefinitions(word, database, d -> request.deliver(consumer, d), delivered),
+                () -> !delivered[0], timeout);
+    }
+
+    /** See {@link DictionaryConnection#getMatchList(String, MatchingStrategy, Database)}. */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return execute(c -> c.getMatchList(word, strategy, database));
+    }
+
+    /** See {@link DictionaryConnection#getMatchList(String, MatchingStrategy, Database, int)}. */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database, int limit)
+            throws DictConnectionException {
+        return execute(c -> c.getMatchList(word, strategy, database, limit));
+    }
+
+    /** See {@link DictionaryConnection#getMatchList(String, MatchingStrategy, Database)}.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database, Duration timeout)
+            throws DictConnectionException {
+        return execute(c -> c.getMatchList(word, strategy, database), timeout);
+    }
+
+    /** See {@link DictionaryConnection#getMatchList(String, MatchingStrategy, Database, int)}.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database, int limit,
+                                    Duration timeout) throws DictConnectionException {
+        return execute(c -> c.getMatchList(word, strategy, database, limit), timeout);
+    }
+
+    /** See {@link DictionaryConnection#getDatabaseList()}. */
+    public Map<String, Database> getDatabaseList() throws DictConnectionException {
+        return execute(DictionaryConnection::getDatabaseList);
+    }
+
+    /** See {@link DictionaryConnection#getStrategyList()}. */
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        return execute(DictionaryConnection::getStrategyList);
+    }
+
+    /** See {@link DictionaryConnection#getDatabaseInfo(Database)}. */
+    public String getDatabaseInfo(Database d) throws DictConnectionException {
+        return execute(c -> c.getDatabaseInfo(d));
+    }
+
+    /** See {@link DictionaryConnection#getDatabaseInfoText(Database)}. */
+    public ReplyText getDatabaseInfoText(Database d) throws DictConnectionException {
+        return execute(c -> c.getDatabaseInfoText(d));
+    }
+
+    /** See {@link DictionaryConnection#getDatabaseList()}.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public Map<String, Database> getDatabaseList(Duration timeout) throws DictConnectionException {
+        return execute(DictionaryConnection::getDatabaseList, timeout);
+    }
+
+    /** See {@link DictionaryConnection#getStrategyList()}.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public Set<MatchingStrategy> getStrategyList(Duration timeout) throws DictConnectionException {
+        return execute(DictionaryConnection::getStrategyList, timeout);
+    }
+
+    /** See {@link DictionaryConnection#getDatabaseInfo(Database)}.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public String getDatabaseInfo(Database d, Duration timeout) throws DictConnectionException {
+        return execute(c -> c.getDatabaseInfo(d), timeout);
+    }
+
+    /** See {@link DictionaryConnection#getDatabaseInfoText(Database)}.
+     *
+     * @param timeout The time to wait for the complete reply.
+     * @throws DictConnectionException If the request failed, or a {@link RequestTimeoutException} if it did not
+     * finish within the timeout.
+     */
+    public ReplyText getDatabaseInfoText(Database d, Duration timeout) throws DictConnectionException {
+        return execute(c -> c.getDatabaseInfoText(d), timeout);
+    }
+
+    /** Sets how long an abandoned request may go on reading its reply before its session is closed instead of being
+     * reused. Applies to requests abandoned from then on.
+     */
+    public void setDrainBudget(Duration budget) {
+        this.drainBudget = budget;
+    }
+
+    /** Stops the keepalive task and closes both the active and the standby connection. Sessions still draining the
+     * reply of an abandoned request are closed without waiting for it.
+     */
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        requests.shutdownNow();
+        DictionaryConnection oldActive, oldStandby;
+        List<DictionaryConnection> oldDraining;
+        synchronized (this) {
+            oldActive = active;
+            oldStandby = standby;
+            standby = null;
+            oldDraining = new ArrayList<>(draining);
+            draining.clear();
+        }
+        for (DictionaryConnection connection : oldDraining)
+            connection.abort();
+        if (oldActive != null && !oldDraining.contains(oldActive))
+            oldActive.close();
+        if (oldStandby != null)
+            oldStandby.close();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isConnected() {
+        return !closed;
+    }
+
+    private <T> T execute(ConnectionCommand<T> command) throws DictConnectionException {
+        return execute(command, () -> true);
+    }
+
+    /** Runs a request on the active session, and once more on a new session if the first one turns out to be dead and
+     * the request may still be retried.
+     */
+    private <T> T execute(ConnectionCommand<T> command, BooleanSupplier retryable) throws DictConnectionException {
+        DictionaryConnection connection = start();
+        try {
+            T result;
+            try {
+                result = command.execute(connection);
+            } catch (DictConnectionException e) {
+                if (!retryable.getAsBoolean() || !isDead(connection, e))
+                    throw e;
+                result = command.execute(replace(connection));
+            }
+            lastActivity = System.currentTimeMillis();
+            return result;
+        } finally {
+            finish();
+        }
+    }
+
+    private <T> T execute(ConnectionCommand<T> command, Duration timeout) throws DictConnectionException {
+        return new Request<T>().await(command, () -> true, timeout);
+    }
+
+    private static ConnectionCommand<Void> streamDefinitions(String word, Database database,
+                                                             Consumer<Definition> consumer, boolean[] delivered) {
+        return c -> {
+            c.getDefinitions(word, database, d -> {
+                delivered[0] = true;
+                consumer.accept(d);
+            });
+            return null;
+        };
+    }
+
+    /** Returns the session to run a request on. The request counts as in flight, which holds off keepalives, until
+     * {@link #finish()} is called.
+     */
+    private synchronized DictionaryConnection start() throws DictConnectionException {
+        if (closed)
+            throw new DictConnectionException("Connection closed");
+        inFlight++;
+        return active;
+    }
+
+    private synchronized void finish() {
+        inFlight--;
+    }
+
+    /** Decides whether a failed request was caused by a dead session rather than by the request itself. I/O errors
+     * are always fatal; anything else is checked with a STATUS command before giving up on the session.
+     */
+    private boolean isDead(DictionaryConnection connection, DictConnectionException e) {
+        if (closed)
+            return false;
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException)
+                return true;
+        }
+        try {
+            connection.getServerStatus();
+            return false;
+        } catch (DictConnectionException ex) {
+            return true;
+        }
+    }
+
+    /** Swaps a failed session for the standby one, or for a new connection if no standby is ready. If another thread
+     * already replaced the session, the current one is returned unchanged.
+     */
+    private DictionaryConnection replace(DictionaryConnection failed) throws DictConnectionException {
+        // QUIT on a dead socket may block until the read timeout, so it never happens on the caller's time
+        if (swap(failed, () -> true))
+            scheduler.execute(failed::close);
+        synchronized (this) {
+            return active;
+        }
+    }
+
+    /** Makes the standby session, or a new connection if no standby is ready, the active one in place of the given
+     * session, which is left open. The new connection is opened without holding the lock, so other requests and the
+     * keepalive task don't wait for the connect and greeting; if the standby session became ready in the meantime, or
+     * the swap is no longer needed, the new connection is kept as the standby or closed.
+     *
+     * @param wanted Checked under the lock just before the swap; the swap is skipped if it returns false.
+     * @return False if the given session was no longer the active one, or the swap was no longer wanted.
+     */
+    private boolean swap(DictionaryConnection old, BooleanSupplier wanted) throws DictConnectionException {
+        DictionaryConnection fresh = null;
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (closed)
+                        throw new DictConnectionException("Connection closed");
+                    if (standby == null) {
+                        standby = fresh;
+                        fresh = null;
+                    }
+                    if (active != old || !wanted.getAsBoolean())
+                        return false;
+                    if (standby != null) {
+                        active = standby;
+                        standby = null;
+                        break;
+                    }
+                }
+                fresh = open();
+            }
+        } finally {
+            if (fresh != null)
+                fresh.close();
+        }
+        prepareStandby();
+        return true;
+    }
+
+    /** Takes a session whose request was abandoned out of service while it drains the reply. The standby session
+     * takes its place at once if one is ready; otherwise a new connection is opened in the background, so the caller
+     * isn't held up connecting, and requests until then still queue on the slow session. No new standby is prepared
+     * until the session is drained, as it is then expected to become the standby itself.
+     */
+    private void abandon(DictionaryConnection connection) {
+        synchronized (this) {
+            if (closed)
+                return;
+            draining.add(connection);
+            if (active != connection || standby != null) {
+                try {
+                    swap(connection, () -> true);
+                } catch (DictConnectionException e) {
+                    // Not reached, since the standby session is used
+                }
+                return;
+            }
+        }
+        requests.execute(() -> {
+            try {
+                // The reply may have been drained in the meantime, leaving the session in service
+                swap(connection, () -> draining.contains(connection));
+            } catch (DictConnectionException e) {
+                // The next request will report the failure
+            }
+        });
+    }
+
+    /** Returns a session that drained the reply of an abandoned request to service, as the standby session if there is
+     * none, or closes it if it failed or is not needed.
+     */
+    private void drained(DictionaryConnection connection, boolean inSync) {
+        synchronized (this) {
+            draining.remove(connection);
+            if (inSync && !closed) {
+                if (active == connection)
+                    return;
+                if (standby == null) {
+                    standby = connection;
+                    return;
+                }
+            }
+        }
+        connection.close();
+        prepareStandby();
+    }
+
+    private void prepareStandby() {
+        synchronized (this) {
+            // A draining session becomes the standby once its reply is read, so no connection is opened for it
+            if (closed || standby != null || standbyPending || !draining.isEmpty())
+                return;
+            standbyPending = true;
+        }
+        scheduler.execute(() -> {
+            DictionaryConnection connection = null;
+            try {
+                connection = open();
+            } catch (DictConnectionException e) {
+                // Retried by the next keepalive round
+            }
+            synchronized (this) {
+                standbyPending = false;
+                if (!closed && standby == null) {
+                    standby = connection;
+                    connection = null;
+                }
+            }
+            if (connection != null)
+                connection.close();
+        });
+    }
+
+    /** Sends STATUS on the active session if it has been idle for the keepalive interval, and on the standby session.
+     * The active session is skipped while a request is in flight: the request keeps it busy, and a STATUS would only
+     * queue behind the reply and hold up the standby check meanwhile.
+     */
+    private void keepAlive() {
+        DictionaryConnection connection, spare;
+        boolean busy;
+        synchronized (this) {
+            connection = active;
+            spare = standby;
+            busy = inFlight > 0;
+        }
+
+        if (!busy && System.currentTimeMillis() - lastActivity >= keepAliveMillis) {
+            try {
+                connection.getServerStatus();
+                lastActivity = System.currentTimeMillis();
+            } catch (DictConnectionException e) {
+                try {
+                    replace(connection);
+                } catch (DictConnectionException ex) {
+                    // The next request will report the failure
+                }
+            }
+        }
+
+        if (spare != null) {
+            try {
+                spare.getServerStatus();
+            } catch (DictConnectionException e) {
+                synchronized (this) {
+                    if (standby == spare)
+                        standby = null;
+                }
+                spare.close();
+            }
+        }
+        prepareStandby();
+    }
+
+    private DictionaryConnection open() throws DictConnectionException {
+        DictionaryConnection connection = new DictionaryConnection(host, port);
+        connection.setReadTimeout(readTimeoutMillis);
+        return connection;
+    }
+
+    /** A request run on a request thread while the caller waits for it with a timeout. The request is either completed
+     * for the caller or abandoned by it, never both, since both are decided under the request's lock.
+     */
+    private class Request<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private DictionaryConnection connection;
+        private boolean finished;
+        private boolean abandoned;
+        private boolean aborted;
+
+        T await(ConnectionCommand<T> command, BooleanSupplier retryable, Duration timeout)
+                throws DictConnectionException {
+            ConnectionCommand<T> attempt = c -> {
+                synchronized (this) {
+                    // An abandoned request isn't retried on the session that replaced its own
+                    if (abandoned)
+                        throw new DictConnectionException("Request abandoned");
+                    connection = c;
+                }
+                return command.execute(c);
+            };
+            BooleanSupplier retryUnlessAbandoned = () -> {
+                synchronized (this) {
+                    if (abandoned)
+                        return false;
+                }
+                return retryable.getAsBoolean();
+            };
+            try {
+                requests.execute(() -> run(attempt, retryUnlessAbandoned));
+            } catch (RejectedExecutionException e) {
+                throw new DictConnectionException("Connection closed");
+            }
+
+            try {
+                return result.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                throw failure(e.getCause());
+            } catch (TimeoutException | InterruptedException e) {
+                if (e instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+                boolean completed;
+                DictionaryConnection slow;
+                synchronized (this) {
+                    completed = finished;
+                    abandoned = !finished;
+                    slow = connection;
+                }
+                if (completed) {
+                    // Finished just as the timeout expired, so the result is already there
+                    try {
+                        return result.join();
+                    } catch (CompletionException ex) {
+                        throw failure(ex.getCause());
+                    }
+                }
+                if (slow != null) {
+                    abandon(slow);
+                    try {
+                        scheduler.schedule(this::expire, drainBudget.toNanos(), TimeUnit.NANOSECONDS);
+                    } catch (RejectedExecutionException ex) {
+                        // Closed, which aborts the draining session
+                    }
+                }
+                throw new RequestTimeoutException("No reply from " + host + " within " + timeout.toMillis() + " ms",
+                        e);
+            }
+        }
+
+        /** Hands a definition to the caller's consumer, unless the request was abandoned. */
+        synchronized void deliver(Consumer<Definition> consumer, Definition definition) {
+            if (!abandoned)
+                consumer.accept(definition);
+        }
+
+        private void run(ConnectionCommand<T> attempt, BooleanSupplier retryable) {
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = execute(attempt, retryable);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            DictionaryConnection target;
+            boolean inSync;
+            synchronized (this) {
+                finished = true;
+                if (!abandoned) {
+                    if (failure == null)
+                        result.complete(value);
+                    else
+                        result.completeExceptionally(failure);
+                    return;
+                }
+                target = connection;
+                inSync = failure == null && !aborted;
+            }
+            if (target != null)
+                drained(target, inSync);
+        }
+
+        /** Closes the socket of a request still draining when the drain budget runs out, which ends its read. */
+        private void expire() {
+            DictionaryConnection slow;
+            synchronized (this) {
+                if (finished)
+                    return;
+                aborted = true;
+                slow = connection;
+            }
+            slow.abort();
+        }
+
+        private DictConnectionException failure(Throwable cause) {
+            if (cause instanceof DictConnectionException)
+                return (DictConnectionException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            return new DictConnectionException(cause);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ca.ubc.cs317.dict.net;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Accumulates the lines of a reply, joined with '\n', while keeping at most a fixed number of characters on the heap.
+ * Past that limit, lines are either dropped or written to a temporary file, depending on the overflow policy.
+ *
+ * Spilled text is stored as UTF-16BE, so character positions map directly to file offsets and the file can be mapped
+ * as a CharBuffer. A mapping can't exceed 2GB, so spilled text is truncated at about a billion characters.
+ */
+class ReplyBuffer {
+
+    private static final long MAX_SPILLED_CHARS = Integer.MAX_VALUE / 2;
+
+    private final int memoryLimit;
+    private final ReplyOverflow overflow;
+    private final StringBuilder memory = new StringBuilder();
+    private Path spillFile;
+    private Writer spill;
+    private long length;
+    private boolean truncated;
+
+    /** Creates an empty buffer.
+     *
+     * @param memoryLimit The maximum number of characters held in memory.
+     * @param overflow What to do with text past the limit.
+     */
+    ReplyBuffer(int memoryLimit, ReplyOverflow overflow) {
+        this.memoryLimit = memoryLimit;
+        this.overflow = overflow;
+    }
+
+    /** Appends a line of the reply. Once the buffer is full or truncated, this only discards the line.
+     *
+     * @throws IOException If the line can't be written to the spill file.
+     */
+    void appendLine(String line) throws IOException {
+        if (truncated)
+            return;
+        int needed = line.length() + (length > 0 ? 1 : 0);
+        if (spill == null && length + needed > memoryLimit) {
+            if (overflow == ReplyOverflow.TRUNCATE) {
+                append(line, memoryLimit - length);
+                truncated = true;
+                return;
+            }
+            startSpill();
+        }
+        if (spill != null && length + needed > MAX_SPILLED_CHARS) {
+            append(line, MAX_SPILLED_CHARS - length);
+            truncated = true;
+            return;
+        }
+        append(line, needed);
+    }
+
+    /** Returns the accumulated text, closing the spill file if one was used.
+     *
+     * @throws IOException If the spill file can't be completed or mapped.
+     */
+    ReplyText build() throws IOException {
+        if (spill == null)
+            return new ReplyText(memory.toString(), truncated, false);
+
+        spill.close();
+        CharBuffer text;
+        try (FileChannel channel = FileChannel.open(spillFile)) {
+            text = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asCharBuffer();
+        }
+        discard();
+        return new ReplyText(text, truncated, true);
+    }
+
+    /** Removes the spill file, if any. The text of a ReplyText already built from it stays readable where the platform
+     * allows deleting mapped files; elsewhere the file is removed when the program exits.
+     */
+    void discard() {
+        if (spillFile == null)
+            return;
+        try {
+            if (spill != null)
+                spill.close();
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            spillFile.toFile().deleteOnExit();
+        }
+        spillFile = null;
+        spill = null;
+    }
+
+    /** Appends up to count characters: the separator from the previous line, if any, followed by the line. */
+    private void append(String line, long count) throws IOException {
+        if (count <= 0)
+            return;
+        Appendable target = spill != null ? spill : memory;
+        if (length > 0) {
+            target.append('\n');
+            count--;
+            length++;
+        }
+        int end = (int) Math.min(line.length(), count);
+        target.append(line, 0, end);
+        length += end;
+    }
+
+    private void startSpill() throws IOException {
+        spillFile = Files.createTempFile("dict-reply", ".txt");
+        spill = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(spillFile), StandardCharsets.UTF_16BE));
+        spill.append(memory);
+        memory.setLength(0);
+        memory.trimToSize();
+    }
+}
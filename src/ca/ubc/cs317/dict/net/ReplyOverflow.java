@@ -0,0 +1,11 @@
+package ca.ubc.cs317.dict.net;
+
+/**
+ * What happens to a reply whose text grows past the memory limit of a connection.
+ */
+public enum ReplyOverflow {
+    /** Text past the limit is read and discarded, and the result is flagged as truncated. */
+    TRUNCATE,
+    /** Text is moved to a temporary file once it reaches the limit, and read back lazily from that file. */
+    SPILL
+}
@@ -0,0 +1,32 @@
+package ca.ubc.cs317.dict.net;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the reading and parsing of a reply, from its first line to its last. Together with
+ * {@link FirstReplyLineEvent} it splits a command's latency into waiting for the server and consuming its answer.
+ */
+@Name("ca.ubc.cs317.dict.ReplyParse")
+@Label("DICT Reply Parse")
+@Description("Reading and parsing of a reply, from its first line to its last")
+@Category({"DICT Client", "Protocol"})
+class ReplyParseEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Database")
+    String database;
+
+    @Label("Reply Size")
+    @DataAmount
+    long replyBytes;
+
+    @Label("Reply Lines")
+    int replyLines;
+}
@@ -0,0 +1,250 @@
+package ca.ubc.cs317.dict.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reader for the replies of a DICT server, which buffers the raw bytes of the connection and finds line ends in them
+ * eight bytes at a time. A {@link BufferedReader} over an {@link java.io.InputStreamReader} decodes every byte into a
+ * character buffer and then examines the characters one by one; here each line is located in the bytes first and
+ * decoded once, by the String constructor, whose ASCII fast path copies the bytes directly. Large replies are mostly
+ * line ends and line contents, so this is where most of the time of a multi-megabyte DEFINE or SHOW INFO went.
+ *
+ * Lines end with LF, optionally preceded by CR, as in the protocol. Text is decoded as UTF-8, the protocol's
+ * character set; malformed input is replaced rather than rejected, as an InputStreamReader does. The class extends
+ * BufferedReader so it can be used wherever the connection's reader was, but mark and reset are not supported:
+ * skipping a text reply uses {@link #skipText()} instead. A single-character read may decode the next character
+ * along with it, so reading lines must not resume in the middle of a line read character by character.
+ */
+final class ReplyReader extends BufferedReader {
+
+    private static final int BUFFER_SIZE = 16384;
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LF_PATTERN = ONES * LF;
+
+    private final InputStream in;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final char[] pair = new char[2];
+    private int pendingChar = -1;
+    private long received;
+
+    ReplyReader(InputStream in) {
+        super(Reader.nullReader(), 1);
+        this.in = in;
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        int scanned = 0; // bytes after position already known not to hold a line feed
+        while (true) {
+            int lf = indexOfLineFeed(buffer, position + scanned, limit);
+            if (lf >= 0) {
+                int end = lf > position && buffer[lf - 1] == CR ? lf - 1 : lf;
+                String line = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+                position = lf + 1;
+                return line;
+            }
+            scanned = limit - position;
+            if (!fill()) {
+                if (position == limit)
+                    return null;
+                String line = new String(buffer, position, limit - position, StandardCharsets.UTF_8);
+                position = limit;
+                return line;
+            }
+        }
+    }
+
+    /** Skips text up to and including the line holding a single ".", which ends every text reply. The reader must be
+     * at the start of a line, and is left at the start of the line after the terminator.
+     *
+     * @return The number of bytes and complete lines skipped, as {bytes, lines}.
+     * @throws IOException If the text could not be read.
+     */
+    long[] skipText() throws IOException {
+        long bytes = 0;
+        long lines = 0;
+        int scanned = 0;
+        while (true) {
+            int lf = indexOfLineFeed(buffer, position + scanned, limit);
+            if (lf < 0) {
+                // The partial line stays in the buffer, as it may turn out to be the terminator
+                scanned = limit - position;
+                if (!fill()) {
+                    bytes += limit - position;
+                    position = limit;
+                    return new long[]{bytes, lines};
+                }
+                continue;
+            }
+            int length = lf - position;
+            boolean terminator = buffer[position] == '.'
+                    && (length == 1 || (length == 2 && buffer[position + 1] == CR));
+            bytes += length + 1;
+            lines++;
+            position = lf + 1;
+            scanned = 0;
+            if (terminator)
+                return new long[]{bytes, lines};
+        }
+    }
+
+    /** Returns the number of bytes read from the stream so far, whether or not they were consumed yet. */
+    long getBytesReceived() {
+        return received;
+    }
+
+    /** Returns the number of bytes consumed so far, by reading lines or characters or by skipping text. Unlike
+     * {@link #getBytesReceived()}, this does not include bytes read ahead into the buffer, so the difference between
+     * two calls is the exact size on the wire of what was read in between.
+     */
+    long getBytesConsumed() {
+        return received - (limit - position);
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+        if (length == 1) {
+            int c = read();
+            if (c < 0)
+                return -1;
+            chars[offset] = (char) c;
+            return 1;
+        }
+        int start = offset;
+        if (pendingChar >= 0) {
+            chars[offset++] = (char) pendingChar;
+            pendingChar = -1;
+            length--;
+        }
+        CharBuffer out = CharBuffer.wrap(chars, offset, length);
+        while (true) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, position, limit - position);
+            decoder.decode(bytes, out, false);
+            position = bytes.position();
+            if (out.position() > start)
+                return out.position() - start;
+            // Not a single complete character is buffered; at the end of the stream, what remains is malformed
+            if (!fill()) {
+                if (position == limit)
+                    return -1;
+                position = limit;
+                chars[start] = '\uFFFD';
+                return 1;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pendingChar >= 0) {
+            int c = pendingChar;
+            pendingChar = -1;
+            return c;
+        }
+        int count = read(pair, 0, 2);
+        if (count < 0)
+            return -1;
+        if (count == 2) {
+            // A second character was decoded along with the first; it is returned by the next read
+            pendingChar = pair[1];
+        }
+        return pair[0];
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && read() >= 0)
+            skipped++;
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return position < limit || pendingChar >= 0 || in.available() > 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** Reads more bytes after the ones not yet consumed, moving those to the start of the buffer, or into a larger
+     * buffer if they fill it.
+     *
+     * @return False at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int count = in.read(buffer, limit, buffer.length - limit);
+        if (count <= 0)
+            return false;
+        limit += count;
+        received += count;
+        return true;
+    }
+
+    /** Returns the index of the first line feed in a range of bytes, or -1 if there is none. Eight bytes are tested at
+     * a time: XOR turns line feeds into zero bytes, and subtracting one from every byte sets the high bit of the lowest
+     * zero byte. Higher bytes may be flagged by the borrow as well, but the lowest flagged byte is always a real match.
+     */
+    static int indexOfLineFeed(byte[] bytes, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = (long) LONGS.get(bytes, i) ^ LF_PATTERN;
+            long found = (word - ONES) & ~word & HIGH_BITS;
+            if (found != 0)
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == LF)
+                return i;
+        }
+        return -1;
+    }
+}
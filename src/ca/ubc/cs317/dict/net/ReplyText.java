@@ -0,0 +1,81 @@
+package ca.ubc.cs317.dict.net;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+
+/**
+ * Text of a multi-line reply, such as the output of SHOW INFO. Short replies are held in memory. Replies that went past
+ * the connection's memory limit are either truncated, which {@link #isTruncated()} reports, or kept in a temporary file
+ * that is memory-mapped and paged in only as the text is read.
+ *
+ * Calling {@link #toString()} on spilled text copies all of it onto the heap; use {@link #openReader()} or the
+ * CharSequence methods to process large replies incrementally.
+ */
+public final class ReplyText implements CharSequence {
+
+    private final CharSequence text;
+    private final boolean truncated;
+    private final boolean spilled;
+
+    ReplyText(CharSequence text, boolean truncated, boolean spilled) {
+        this.text = text;
+        this.truncated = truncated;
+        this.spilled = spilled;
+    }
+
+    /** Returns true if part of the reply was discarded because it went past the memory limit. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /** Returns true if the text is read from a temporary file rather than held in memory. */
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    /** Opens a reader over the text. Reading spilled text this way never holds more than the reader's buffer. */
+    public Reader openReader() {
+        if (!spilled)
+            return new StringReader(text.toString());
+        CharBuffer buffer = ((CharBuffer) text).duplicate();
+        return new Reader() {
+            @Override
+            public int read(char[] chars, int offset, int length) {
+                if (length == 0)
+                    return 0;
+                if (!buffer.hasRemaining())
+                    return -1;
+                int count = Math.min(length, buffer.remaining());
+                buffer.get(chars, offset, count);
+                return count;
+            }
+
+            @Override
+            public void close() throws IOException {
+                // The mapping is released when the text is garbage collected
+            }
+        };
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
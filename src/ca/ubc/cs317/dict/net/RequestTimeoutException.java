@@ -0,0 +1,13 @@
+package ca.ubc.cs317.dict.net;
+
+/**
+ * Thrown when a request with a timeout got no complete reply in time. Unlike other connection errors, the session is
+ * not broken: the request was abandoned and later requests are served as usual, so callers can treat it as a result
+ * that arrived too late rather than as a reason to reconnect.
+ */
+public class RequestTimeoutException extends DictConnectionException {
+
+    public RequestTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,45 @@
+package ca.ubc.cs317.dict.ui;
+
+import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+
+/**
+ * Renders definition bodies as wrapped multi-line text. A single text area is reused for every cell, so painting a
+ * table with thousands of rows does not allocate a component per render call.
+ */
+public class DefinitionCellRenderer implements TableCellRenderer {
+
+    private final JTextArea area = new JTextArea();
+
+    public DefinitionCellRenderer() {
+        area.setLineWrap(true);
+        area.setWrapStyleWord(true);
+        area.setEditable(false);
+        area.setOpaque(true);
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+                                                   int row, int column) {
+        area.setText(value == null ? "" : value.toString());
+        area.setFont(table.getFont());
+        area.setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+        area.setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
+        return area;
+    }
+
+    /** Computes the height needed to show a value when the column is wrapped at the given width.
+     *
+     * @param table The table the value belongs to, used for font information.
+     * @param value The value to be measured.
+     * @param width The current width of the column, in pixels.
+     * @return The preferred height of the rendered value, in pixels.
+     */
+    public int getPreferredHeight(JTable table, Object value, int width) {
+        area.setText(value == null ? "" : value.toString());
+        area.setFont(table.getFont());
+        area.setSize(width, Short.MAX_VALUE);
+        return area.getPreferredSize().height;
+    }
+}
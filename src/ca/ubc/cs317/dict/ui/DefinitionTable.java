@@ -0,0 +1,154 @@
+package ca.ubc.cs317.dict.ui;
+
+import ca.ubc.cs317.dict.cache.CrossReferences;
+import ca.ubc.cs317.dict.model.Definition;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.TableModelEvent;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Table of definitions whose row heights are computed lazily. Only rows that scroll into view are measured, and the
+ * measured heights are kept until the width of the definition column changes or the rows are replaced.
+ *
+ * The context menu of a row lists the cross-references in its definition, and choosing one hands it to the reference
+ * handler.
+ */
+public class DefinitionTable extends JTable {
+
+    private static final int DEFINITION_COLUMN = 2;
+
+    private final DefinitionCellRenderer definitionRenderer = new DefinitionCellRenderer();
+    private final BitSet measuredRows = new BitSet();
+    private final ChangeListener viewportListener = e -> scheduleMeasure();
+    private int measuredWidth = -1;
+    private boolean measurePending;
+    private BiConsumer<Definition, String> referenceHandler;
+
+    public DefinitionTable(DefinitionTableModel model) {
+        super(model);
+        getColumnModel().getColumn(DEFINITION_COLUMN).setCellRenderer(definitionRenderer);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (e.isPopupTrigger())
+                    showReferences(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (e.isPopupTrigger())
+                    showReferences(e);
+            }
+        });
+    }
+
+    /** Sets what happens when a cross-reference is chosen from a row's context menu.
+     *
+     * @param referenceHandler Called on the event dispatch thread with the definition the reference appears in and the
+     *                         referenced word.
+     */
+    public void setReferenceHandler(BiConsumer<Definition, String> referenceHandler) {
+        this.referenceHandler = referenceHandler;
+    }
+
+    private void showReferences(MouseEvent e) {
+        int row = rowAtPoint(e.getPoint());
+        if (row < 0 || referenceHandler == null)
+            return;
+        Definition definition = ((DefinitionTableModel) getModel()).getDefinitionAt(convertRowIndexToModel(row));
+        List<String> references = CrossReferences.extract(definition);
+        if (references.isEmpty())
+            return;
+
+        JPopupMenu menu = new JPopupMenu();
+        for (String reference : references) {
+            JMenuItem item = new JMenuItem("Look up \"" + reference + "\"");
+            item.addActionListener(event -> referenceHandler.accept(definition, reference));
+            menu.add(item);
+        }
+        menu.show(this, e.getX(), e.getY());
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (getParent() instanceof JViewport)
+            ((JViewport) getParent()).addChangeListener(viewportListener);
+    }
+
+    @Override
+    public void removeNotify() {
+        if (getParent() instanceof JViewport)
+            ((JViewport) getParent()).removeChangeListener(viewportListener);
+        super.removeNotify();
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        super.tableChanged(e);
+        // measuredRows is null while the superclass constructor installs the model
+        if (measuredRows == null)
+            return;
+        // Rows appended at the end keep the indices of the rows already measured; anything else invalidates them
+        if (e.getType() != TableModelEvent.INSERT || e.getFirstRow() < measuredRows.length())
+            measuredRows.clear();
+        scheduleMeasure();
+    }
+
+    @Override
+    public void columnMarginChanged(ChangeEvent e) {
+        super.columnMarginChanged(e);
+        scheduleMeasure();
+    }
+
+    private void scheduleMeasure() {
+        if (measurePending)
+            return;
+        measurePending = true;
+        SwingUtilities.invokeLater(() -> {
+            measurePending = false;
+            measureVisibleRows();
+        });
+    }
+
+    private void measureVisibleRows() {
+        int column = convertColumnIndexToView(DEFINITION_COLUMN);
+        if (column < 0 || getRowCount() == 0)
+            return;
+
+        int width = getColumnModel().getColumn(column).getWidth();
+        if (width != measuredWidth) {
+            measuredRows.clear();
+            measuredWidth = width;
+        }
+
+        Rectangle visible = getVisibleRect();
+        if (visible.isEmpty())
+            return;
+        int first = rowAtPoint(visible.getLocation());
+        int last = rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        if (first < 0)
+            return;
+        if (last < 0)
+            last = getRowCount() - 1;
+
+        int minimumHeight = getRowHeight();
+        for (int row = first; row <= last; row++) {
+            if (measuredRows.get(row))
+                continue;
+            int height = Math.max(minimumHeight,
+                    definitionRenderer.getPreferredHeight(this, getValueAt(row, column), width));
+            if (getRowHeight(row) != height)
+                setRowHeight(row, height);
+            measuredRows.set(row);
+        }
+    }
+}
@@ -1,210 +1,519 @@
-package ca.ubc.cs317.dict.ui;
-
-import ca.ubc.cs317.dict.net.DictConnectionException;
-import ca.ubc.cs317.dict.model.Database;
-import ca.ubc.cs317.dict.model.MatchingStrategy;
-import ca.ubc.cs317.dict.net.DictionaryConnection;
-
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
-
-/**
- * Created by Jonatan on 2017-09-09.
- */
-public class DictionaryMain extends JFrame {
-
-    private DictionaryConnection connection;
-    private String serverName = "dict.org";
-
-    private final DefaultComboBoxModel<Database> databaseModel;
-    private final DefaultComboBoxModel<MatchingStrategy> strategyModel;
-    private final DefinitionTableModel definitionModel;
-
-    private final WordSearchField wordSearchField;
-    private final JTable definitionTable;
-
-    private final JEditorPane databaseDescription;
-
-    DictionaryMain() {
-        super("Dictionary");
-        this.setSize(800, 600);
-        this.addWindowListener(new WindowAdapter() {
-            @Override
-            public void windowClosing(WindowEvent e) {
-                if (connection != null)
-                    connection.close();
-            }
-        });
-        this.setDefaultCloseOperation(EXIT_ON_CLOSE);
-
-        JPanel optionsPanel = new JPanel(new GridBagLayout());
-        GridBagConstraints c = new GridBagConstraints();
-        c.fill = GridBagConstraints.BOTH;
-        c.weightx = 1;
-        this.getContentPane().add(optionsPanel, BorderLayout.SOUTH);
-
-        databaseModel = new DefaultComboBoxModel<>();
-        strategyModel = new DefaultComboBoxModel<>();
-
-        JLabel databaseLabel = new JLabel("Database:");
-        databaseLabel.setHorizontalAlignment(JLabel.TRAILING);
-        JComboBox<Database> databaseSelection = new JComboBox<>(databaseModel);
-        databaseLabel.setLabelFor(databaseSelection);
-        c.gridwidth = GridBagConstraints.RELATIVE;
-        optionsPanel.add(databaseLabel, c);
-        c.gridwidth = GridBagConstraints.REMAINDER;
-        optionsPanel.add(databaseSelection, c);
-
-        databaseSelection.addActionListener(new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                Database d = (Database) databaseModel.getSelectedItem();
-                if (d != null && connection != null) {
-                    try {
-                        databaseDescription.setText(d.getDescription() + "\n" + connection.getDatabaseInfo(d));
-                    } catch (DictConnectionException ex) {
-                        databaseDescription.setText(d.getDescription() + "\n" + "Error retrieving database information");
-                    }
-                }
-            }
-        });
-        JLabel strategyLabel = new JLabel("Hint Strategy:");
-        strategyLabel.setHorizontalAlignment(JLabel.TRAILING);
-        JComboBox<MatchingStrategy> strategySelection = new JComboBox<>(strategyModel);
-        strategyLabel.setLabelFor(strategySelection);
-        c.gridwidth = GridBagConstraints.RELATIVE;
-        optionsPanel.add(strategyLabel, c);
-        c.gridwidth = GridBagConstraints.REMAINDER;
-        optionsPanel.add(strategySelection, c);
-
-        databaseDescription = new JEditorPane();
-        databaseDescription.setContentType("text");
-        databaseDescription.setText("All databases");
-        databaseDescription.setPreferredSize(new Dimension(400, 100));
-        optionsPanel.add(new JScrollPane(databaseDescription), c);
-
-        JButton disconnectButton = new JButton("Disconnect");
-        disconnectButton.addActionListener(e -> establishConnection());
-        c.gridwidth = GridBagConstraints.REMAINDER;
-        optionsPanel.add(disconnectButton, c);
-
-        JPanel searchPanel = new JPanel(new BorderLayout());
-        this.getContentPane().add(searchPanel, BorderLayout.NORTH);
-
-        wordSearchField = new WordSearchField(this);
-        searchPanel.add(wordSearchField, BorderLayout.CENTER);
-
-        JButton searchButton = new JButton("Search");
-        searchButton.addActionListener(e -> showDefinitions());
-        this.getRootPane().setDefaultButton(searchButton);
-        searchPanel.add(searchButton, BorderLayout.LINE_END);
-
-        definitionModel = new DefinitionTableModel();
-        definitionTable = new JTable(definitionModel);
-        definitionTable.getColumnModel().getColumn(2).setCellRenderer((table, value, isSelected, hasFocus, row, column) -> {
-            JTextArea area = new JTextArea(value.toString());
-            area.setBackground(UIManager.getColor(isSelected ? "Table.selectionBackground" : "Table.background"));
-            return area;
-        });
-        definitionTable.getColumnModel().getColumn(0).setPreferredWidth(30);
-        definitionTable.getColumnModel().getColumn(1).setPreferredWidth(30);
-        definitionTable.getColumnModel().getColumn(2).setPreferredWidth(500);
-        this.getContentPane().add(new JScrollPane(definitionTable), BorderLayout.CENTER);
-    }
-
-    public void handleException(Throwable ex) {
-        JOptionPane.showMessageDialog(this, "Connection error:\n" + ex.toString(), "Connection error", JOptionPane.ERROR_MESSAGE);
-        establishConnection();
-    }
-
-    public void showDefinitions() {
-
-        new SwingWorker<Void, Void>() {
-            private final String word = Objects.requireNonNullElse(wordSearchField.getSelectedItem(), "").toString();
-
-            @Override
-            protected Void doInBackground() throws Exception {
-                definitionModel.populateDefinitions(connection.getDefinitions(word,
-                        (Database) databaseModel.getSelectedItem()));
-                return null;
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    get(); // Just to trigger a possible exception caused by doInBackground
-                    for (int i = 0; i<definitionModel.getRowCount() ; i++) {
-                        Component c = definitionTable.prepareRenderer(definitionTable.getCellRenderer(i, 2), i, 2);
-                        definitionTable.setRowHeight(i, Math.max((int) c.getPreferredSize().getHeight(), definitionTable.getRowHeight()));
-                    }
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } catch (ExecutionException e) {
-                    handleException(e.getCause());
-                }
-            }
-        }.execute();
-
-    }
-
-    public void establishConnection() {
-        if (connection != null)
-            connection.close();
-
-        definitionModel.populateDefinitions(Collections.emptyList());
-        databaseModel.removeAllElements();
-        databaseModel.addElement(new Database("*", "All databases"));
-        databaseModel.addElement(new Database("!", "Any database"));
-        strategyModel.removeAllElements();
-        wordSearchField.reset();
-
-        try {
-            serverName = JOptionPane.showInputDialog(this, "Dictionary server",
-                    serverName);
-            if (serverName == null) System.exit(0);
-
-            if (serverName.contains(":")) {
-                String[] serverData = serverName.split(":", 2);
-                connection = new DictionaryConnection(serverData[0], Integer.parseInt(serverData[1]));
-            } else
-                connection = new DictionaryConnection(serverName);
-
-            for (Database db : connection.getDatabaseList().values()) {
-                databaseModel.addElement(db);
-            }
-
-            for (MatchingStrategy strategy : connection.getStrategyList()) {
-                strategyModel.addElement(strategy);
-                if (strategy.getName().equals("prefix"))
-                    strategyModel.setSelectedItem(strategy);
-            }
-        } catch (DictConnectionException ex) {
-            handleException(ex);
-        }
-
-        wordSearchField.grabFocus();
-    }
-
-    public Collection<String> getMatchList(String word) throws DictConnectionException {
-        return connection.getMatchList(word,
-                (MatchingStrategy) strategyModel.getSelectedItem(),
-                (Database) databaseModel.getSelectedItem());
-    }
-
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            DictionaryMain main = new DictionaryMain();
-            main.setVisible(true);
-            main.establishConnection();
-        });
-    }
-
-}
+package ca.ubc.cs317.dict.ui;
+
+import ca.ubc.cs317.dict.cache.DefinitionCache;
+import ca.ubc.cs317.dict.cache.LinkPrefetcher;
+import ca.ubc.cs317.dict.cache.NegativeCache;
+import ca.ubc.cs317.dict.cache.Prefetcher;
+import ca.ubc.cs317.dict.index.InvertedIndex;
+import ca.ubc.cs317.dict.index.LocalMatcher;
+import ca.ubc.cs317.dict.index.QueryHistory;
+import ca.ubc.cs317.dict.net.ConnectionPool;
+import ca.ubc.cs317.dict.net.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import ca.ubc.cs317.dict.net.DictionaryConnection;
+import ca.ubc.cs317.dict.net.FanOutClient;
+import ca.ubc.cs317.dict.net.ManagedConnection;
+import ca.ubc.cs317.dict.net.RequestTimeoutException;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Created by Jonatan on 2017-09-09.
+ */
+public class DictionaryMain extends JFrame {
+
+    private static final Path DATA_DIRECTORY = Paths.get(System.getProperty("user.home"), ".dictionary");
+    private static final long HEADWORD_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000;
+    private static final MatchingStrategy HEADWORD_STRATEGY = new MatchingStrategy("re", "Regular expressions");
+
+    private static final int FAN_OUT_CONNECTIONS = 4;
+    private static final int SUGGESTION_LIMIT = 50;
+    private static final int HISTORY_SUGGESTION_LIMIT = 8;
+    private static final int HISTORY_SIZE = 2000;
+    private static final long HISTORY_HALF_LIFE_MILLIS = 14L * 24 * 60 * 60 * 1000;
+    private static final int PREFETCH_BUDGET = 3;
+    private static final int PREFETCH_CACHE_SIZE = 64;
+    private static final int LINK_PREFETCH_DEPTH = 2;
+    private static final int LINK_PREFETCH_BUDGET = 16;
+    private static final long PREFETCH_TTL_MILLIS = 60 * 1000;
+    private static final int NEGATIVE_CACHE_SIZE = 1024;
+    private static final long NEGATIVE_TTL_MILLIS = 10 * 60 * 1000;
+    private static final long EDT_STALL_THRESHOLD_MILLIS = 100;
+    private static final long EDT_SAMPLE_INTERVAL_MILLIS = 20;
+    // Requests on the shared session give up after these, so one slow reply doesn't hold up the others
+    private static final Duration SUGGESTION_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration INFO_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration LIST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFINE_TIMEOUT = Duration.ofSeconds(30);
+    private static final double HEADWORD_FILTER_FALSE_POSITIVE_RATE = 0.01;
+    private static final long HEADWORD_FILTER_MAX_BYTES = 1024 * 1024;
+
+    private ManagedConnection connection;
+    private FanOutClient fanOut;
+    private DefinitionCache definitionCache;
+    private Prefetcher prefetcher;
+    private LinkPrefetcher linkPrefetcher;
+    private String serverName = "dict.org";
+    private InvertedIndex definitionIndex;
+    private QueryHistory queryHistory;
+
+    private final NegativeCache negativeCache = new NegativeCache(NEGATIVE_CACHE_SIZE, NEGATIVE_TTL_MILLIS,
+            HEADWORD_FILTER_FALSE_POSITIVE_RATE, HEADWORD_FILTER_MAX_BYTES, HEADWORD_MAX_AGE_MILLIS);
+    private volatile LocalMatcher localMatcher = new LocalMatcher(HEADWORD_MAX_AGE_MILLIS);
+    private final Set<Database> headwordsLoading = ConcurrentHashMap.newKeySet();
+    private final Set<Database> headwordsUnavailable = ConcurrentHashMap.newKeySet();
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "dict-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DefaultComboBoxModel<Database> databaseModel;
+    private final DefaultComboBoxModel<MatchingStrategy> strategyModel;
+    private final DefinitionTableModel definitionModel;
+
+    private final WordSearchField wordSearchField;
+    private final DefinitionTable definitionTable;
+
+    private final JEditorPane databaseDescription;
+    private final JLabel statusLabel;
+
+    private SwingWorker<Void, Definition> definitionWorker;
+
+    DictionaryMain() {
+        super("Dictionary");
+        this.setSize(800, 600);
+        this.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (connection != null)
+                    connection.close();
+                if (prefetcher != null)
+                    prefetcher.close();
+                if (linkPrefetcher != null)
+                    linkPrefetcher.close();
+                if (fanOut != null)
+                    fanOut.close();
+                if (queryHistory != null)
+                    queryHistory.close();
+                if (definitionIndex != null) {
+                    try {
+                        definitionIndex.close();
+                    } catch (IOException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }
+        });
+        this.setDefaultCloseOperation(EXIT_ON_CLOSE);
+
+        try {
+            definitionIndex = new InvertedIndex(DATA_DIRECTORY.resolve("index"));
+        } catch (IOException e) {
+            // The client works without a local index, it just won't remember what was seen
+            e.printStackTrace();
+        }
+        try {
+            queryHistory = new QueryHistory(DATA_DIRECTORY.resolve("history"), HISTORY_SIZE, HISTORY_HALF_LIFE_MILLIS);
+        } catch (IOException e) {
+            // Suggestions then only come from matches
+            e.printStackTrace();
+        }
+
+        JPanel optionsPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints c = new GridBagConstraints();
+        c.fill = GridBagConstraints.BOTH;
+        c.weightx = 1;
+        this.getContentPane().add(optionsPanel, BorderLayout.SOUTH);
+
+        databaseModel = new DefaultComboBoxModel<>();
+        strategyModel = new DefaultComboBoxModel<>();
+
+        JLabel databaseLabel = new JLabel("Database:");
+        databaseLabel.setHorizontalAlignment(JLabel.TRAILING);
+        JComboBox<Database> databaseSelection = new JComboBox<>(databaseModel);
+        databaseLabel.setLabelFor(databaseSelection);
+        c.gridwidth = GridBagConstraints.RELATIVE;
+        optionsPanel.add(databaseLabel, c);
+        c.gridwidth = GridBagConstraints.REMAINDER;
+        optionsPanel.add(databaseSelection, c);
+
+        databaseSelection.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Database d = (Database) databaseModel.getSelectedItem();
+                loadHeadwords(d);
+                if (d != null && connection != null)
+                    showDatabaseInfo(d);
+            }
+        });
+        JLabel strategyLabel = new JLabel("Hint Strategy:");
+        strategyLabel.setHorizontalAlignment(JLabel.TRAILING);
+        JComboBox<MatchingStrategy> strategySelection = new JComboBox<>(strategyModel);
+        strategyLabel.setLabelFor(strategySelection);
+        c.gridwidth = GridBagConstraints.RELATIVE;
+        optionsPanel.add(strategyLabel, c);
+        c.gridwidth = GridBagConstraints.REMAINDER;
+        optionsPanel.add(strategySelection, c);
+
+        databaseDescription = new JEditorPane();
+        databaseDescription.setContentType("text");
+        databaseDescription.setText("All databases");
+        databaseDescription.setPreferredSize(new Dimension(400, 100));
+        optionsPanel.add(new JScrollPane(databaseDescription), c);
+
+        JButton disconnectButton = new JButton("Disconnect");
+        disconnectButton.addActionListener(e -> establishConnection());
+        c.gridwidth = GridBagConstraints.REMAINDER;
+        optionsPanel.add(disconnectButton, c);
+
+        statusLabel = new JLabel(" ");
+        optionsPanel.add(statusLabel, c);
+
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        this.getContentPane().add(searchPanel, BorderLayout.NORTH);
+
+        wordSearchField = new WordSearchField(this);
+        searchPanel.add(wordSearchField, BorderLayout.CENTER);
+
+        JButton searchButton = new JButton("Search");
+        searchButton.addActionListener(e -> showDefinitions());
+        this.getRootPane().setDefaultButton(searchButton);
+        searchPanel.add(searchButton, BorderLayout.LINE_END);
+
+        definitionModel = new DefinitionTableModel();
+        definitionTable = new DefinitionTable(definitionModel);
+        definitionTable.setReferenceHandler(this::followReference);
+        definitionTable.getColumnModel().getColumn(0).setPreferredWidth(30);
+        definitionTable.getColumnModel().getColumn(1).setPreferredWidth(30);
+        definitionTable.getColumnModel().getColumn(2).setPreferredWidth(500);
+        this.getContentPane().add(new JScrollPane(definitionTable), BorderLayout.CENTER);
+    }
+
+    /** Shows the description of a database right away, and the server's information about it once it arrives. */
+    private void showDatabaseInfo(Database d) {
+        databaseDescription.setText(d.getDescription());
+        ManagedConnection current = connection;
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws Exception {
+                return current.getDatabaseInfo(d, INFO_TIMEOUT);
+            }
+
+            @Override
+            protected void done() {
+                // Another database may have been selected in the meantime
+                if (databaseModel.getSelectedItem() != d)
+                    return;
+                try {
+                    databaseDescription.setText(d.getDescription() + "\n" + get());
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                } catch (ExecutionException e) {
+                    databaseDescription.setText(d.getDescription() + "\n" + "Error retrieving database information");
+                }
+            }
+        }.execute();
+    }
+
+    public void handleException(Throwable ex) {
+        JOptionPane.showMessageDialog(this, "Connection error:\n" + ex.toString(), "Connection error", JOptionPane.ERROR_MESSAGE);
+        establishConnection();
+    }
+
+    public void showDefinitions() {
+        String word = Objects.requireNonNullElse(wordSearchField.getSelectedItem(), "").toString();
+        showDefinitions(word, (Database) databaseModel.getSelectedItem());
+    }
+
+    /** Looks up a word referred to by a definition, in the database of that definition. The lookup is usually
+     * answered from the cache, since the references of shown definitions are prefetched.
+     *
+     * @param definition The definition the reference appears in.
+     * @param word The referenced word.
+     */
+    public void followReference(Definition definition, String word) {
+        wordSearchField.showWord(word);
+        showDefinitions(word, new Database(definition.getDatabaseName(), ""));
+    }
+
+    private void showDefinitions(String word, Database database) {
+        statusLabel.setText(" ");
+        // A new search supersedes the one still streaming, whose remaining rows are discarded. Interrupting its
+        // worker abandons the request, so the new one doesn't wait for the rest of the old reply
+        if (definitionWorker != null)
+            definitionWorker.cancel(true);
+        definitionModel.populateDefinitions(Collections.emptyList());
+
+        if (prefetcher != null)
+            prefetcher.cancel();
+        if (linkPrefetcher != null)
+            linkPrefetcher.cancel();
+        List<Definition> prefetched = definitionCache != null ? definitionCache.get(word, database) : null;
+        if (prefetched != null) {
+            if (queryHistory != null && !prefetched.isEmpty())
+                queryHistory.record(word);
+            if (definitionIndex != null)
+                definitionIndex.addAll(prefetched);
+            definitionModel.appendDefinitions(prefetched);
+            if (linkPrefetcher != null)
+                linkPrefetcher.follow(prefetched);
+            return;
+        }
+        // Misspellings that recently found nothing, or that aren't among the database's headwords, find nothing again
+        if (database != null && negativeCache.isDefineAbsent(word, database))
+            return;
+
+        definitionWorker = new SwingWorker<Void, Definition>() {
+            private final List<Definition> shown = new ArrayList<>();
+
+            @Override
+            protected Void doInBackground() throws Exception {
+                Consumer<Definition> consumer = definition -> {
+                    shown.add(definition);
+                    if (definitionIndex != null)
+                        definitionIndex.add(definition);
+                    if (!isCancelled())
+                        publish(definition);
+                };
+                if (isMultiDatabase(database))
+                    fanOut.getDefinitions(word, database, consumer, DEFINE_TIMEOUT);
+                else
+                    connection.getDefinitions(word, database, consumer, DEFINE_TIMEOUT);
+                if (shown.isEmpty())
+                    negativeCache.recordDefineMiss(word, database);
+                return null;
+            }
+
+            @Override
+            protected void process(List<Definition> chunks) {
+                if (!isCancelled())
+                    definitionModel.appendDefinitions(chunks);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled())
+                    return;
+                try {
+                    get(); // Just to trigger a possible exception caused by doInBackground
+                    // Only words that were found are suggested again
+                    if (queryHistory != null && !shown.isEmpty())
+                        queryHistory.record(word);
+                    if (linkPrefetcher != null)
+                        linkPrefetcher.follow(shown);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                } catch (ExecutionException e) {
+                    // The session is fine and the reply is still being read in the background, so this is no
+                    // reason to reconnect
+                    if (e.getCause() instanceof RequestTimeoutException)
+                        statusLabel.setText("No reply for \"" + word + "\" in time; search again to retry");
+                    else
+                        handleException(e.getCause());
+                }
+            }
+        };
+        definitionWorker.execute();
+    }
+
+    /** Starts fetching the definitions of the first suggestions in the background, so that searching for one of them
+     * is answered from the cache. Must be called on the event dispatch thread.
+     *
+     * @param words The suggestions, most likely first.
+     */
+    public void prefetchDefinitions(List<String> words) {
+        Database database = (Database) databaseModel.getSelectedItem();
+        if (prefetcher != null && database != null)
+            prefetcher.prefetch(words, database);
+    }
+
+    /** Drops queued prefetch requests, as when the suggestions they were based on are out of date.
+     */
+    public void cancelPrefetch() {
+        if (prefetcher != null)
+            prefetcher.cancel();
+    }
+
+    public void establishConnection() {
+        if (connection != null)
+            connection.close();
+        if (prefetcher != null)
+            prefetcher.close();
+        if (linkPrefetcher != null)
+            linkPrefetcher.close();
+        if (fanOut != null)
+            fanOut.close();
+
+        definitionModel.populateDefinitions(Collections.emptyList());
+        headwordsUnavailable.clear();
+        negativeCache.clear();
+        databaseModel.removeAllElements();
+        databaseModel.addElement(new Database("*", "All databases"));
+        databaseModel.addElement(new Database("!", "Any database"));
+        strategyModel.removeAllElements();
+        wordSearchField.reset();
+
+        try {
+            serverName = JOptionPane.showInputDialog(this, "Dictionary server",
+                    serverName);
+            if (serverName == null) System.exit(0);
+
+            if (serverName.contains(":")) {
+                String[] serverData = serverName.split(":", 2);
+                connection = new ManagedConnection(serverData[0], Integer.parseInt(serverData[1]));
+            } else
+                connection = new ManagedConnection(serverName);
+
+            ConnectionPool pool = new ConnectionPool(connection.getHost(), connection.getPort(), FAN_OUT_CONNECTIONS);
+            fanOut = new FanOutClient(pool);
+            // Each prefetch is a single request on one pooled connection, even for "*", leaving the others free
+            definitionCache = new DefinitionCache(PREFETCH_CACHE_SIZE, PREFETCH_TTL_MILLIS);
+            prefetcher = new Prefetcher(pool::getDefinitions, definitionCache, PREFETCH_BUDGET);
+            linkPrefetcher = new LinkPrefetcher(pool::getDefinitions, definitionCache, LINK_PREFETCH_DEPTH,
+                    LINK_PREFETCH_BUDGET);
+
+            // Headword snapshots are kept per server, since database names are only unique within a server
+            localMatcher = new LocalMatcher(HEADWORD_MAX_AGE_MILLIS, DATA_DIRECTORY.resolve("headwords")
+                    .resolve(connection.getHost() + "_" + connection.getPort()));
+
+            for (Database db : connection.getDatabaseList(LIST_TIMEOUT).values()) {
+                databaseModel.addElement(db);
+            }
+
+            for (MatchingStrategy strategy : connection.getStrategyList(LIST_TIMEOUT)) {
+                strategyModel.addElement(strategy);
+                if (strategy.getName().equals("prefix"))
+                    strategyModel.setSelectedItem(strategy);
+            }
+        } catch (DictConnectionException ex) {
+            handleException(ex);
+        }
+
+        wordSearchField.grabFocus();
+    }
+
+    /** Returns the words searched for before that start with the typed text, most frequently and recently searched
+     * first. Answered from memory, so it may be called on the event dispatch thread for every keystroke.
+     *
+     * @param typed The text typed so far.
+     */
+    public List<String> getHistorySuggestions(String typed) {
+        return queryHistory != null ? queryHistory.suggest(typed, HISTORY_SUGGESTION_LIMIT) : List.of();
+    }
+
+    public Collection<String> getMatchList(String word) throws DictConnectionException {
+        MatchingStrategy strategy = (MatchingStrategy) strategyModel.getSelectedItem();
+        Database database = (Database) databaseModel.getSelectedItem();
+
+        // Answered from the local headword snapshot when there is a fresh one; otherwise the server answers while a
+        // new snapshot is fetched in the background
+        Set<String> localMatches = localMatcher.match(word, strategy, database, SUGGESTION_LIMIT);
+        if (localMatches != null)
+            return localMatches;
+        if (LocalMatcher.supports(strategy))
+            loadHeadwords(database);
+        if (strategy == null || database == null)
+            return connection.getMatchList(word, strategy, database, SUGGESTION_LIMIT, SUGGESTION_TIMEOUT);
+        if (negativeCache.isMatchAbsent(word, strategy, database))
+            return Collections.emptySet();
+
+        Set<String> matches = isMultiDatabase(database)
+                ? fanOut.getMatchList(word, strategy, database, SUGGESTION_LIMIT)
+                : connection.getMatchList(word, strategy, database, SUGGESTION_LIMIT, SUGGESTION_TIMEOUT);
+        if (matches.isEmpty())
+            negativeCache.recordMatchMiss(word, strategy, database);
+        return matches;
+    }
+
+    private static boolean isMultiDatabase(Database database) {
+        return database != null && (database.getName().equals("*") || database.getName().equals("!"));
+    }
+
+    /** Fetches all headwords of a database in the background and hands them to the local matcher and the negative
+     * cache's headword filter. The transfer uses its own connection, so it doesn't hold up interactive requests on the
+     * main one. Headwords already in a fresh snapshot are not fetched again; only the filter is built from them.
+     */
+    private void loadHeadwords(Database database) {
+        ManagedConnection current = connection;
+        LocalMatcher matcher = localMatcher;
+        if (current == null || database == null || isMultiDatabase(database)
+                || headwordsUnavailable.contains(database))
+            return;
+        if (matcher.isAvailable(database)) {
+            if (!negativeCache.hasHeadwords(database) && headwordsLoading.add(database)) {
+                backgroundExecutor.execute(() -> {
+                    try {
+                        List<String> words = new ArrayList<>();
+                        if (matcher.forEachHeadword(database, words::add))
+                            negativeCache.loadHeadwords(database, words);
+                    } finally {
+                        headwordsLoading.remove(database);
+                    }
+                });
+            }
+            return;
+        }
+        if (!headwordsLoading.add(database))
+            return;
+
+        backgroundExecutor.execute(() -> {
+            try {
+                DictionaryConnection headwordConnection = new DictionaryConnection(current.getHost(), current.getPort());
+                try {
+                    Set<String> words = headwordConnection.getMatchList(".", HEADWORD_STRATEGY, database);
+                    if (words.isEmpty())
+                        headwordsUnavailable.add(database); // server doesn't support regular expressions
+                    else {
+                        matcher.load(database, words);
+                        negativeCache.loadHeadwords(database, words);
+                    }
+                } finally {
+                    headwordConnection.close();
+                }
+            } catch (DictConnectionException e) {
+                // Matches keep coming from the server; the load is retried on a later request
+            } finally {
+                headwordsLoading.remove(database);
+            }
+        });
+    }
+
+    /** Starts the client. With -Ddict.monitorEdt=true, the event dispatch thread is watched for events that block it,
+     * and a report of them is written to standard error on exit.
+     */
+    public static void main(String[] args) {
+        if (Boolean.getBoolean("dict.monitorEdt")) {
+            EdtMonitor monitor = EdtMonitor.install(EDT_STALL_THRESHOLD_MILLIS, EDT_SAMPLE_INTERVAL_MILLIS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(monitor.report())));
+        }
+        SwingUtilities.invokeLater(() -> {
+            DictionaryMain main = new DictionaryMain();
+            main.setVisible(true);
+            main.establishConnection();
+        });
+    }
+
+}
@@ -0,0 +1,226 @@
+package ca.ubc.cs317.dict.ui;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watchdog for the event dispatch thread, meant for finding work that should have been done in the background. It is
+ * opt-in, as it replaces the system event queue with one that times every event it dispatches.
+ *
+ * Two things are measured. The latency of the thread is how long an event waits before it is dispatched, which is how
+ * long the user waits for the window to react; a probe event is posted periodically and the time until it runs is
+ * added to a histogram. Separately, when a single event has been dispatching for longer than a threshold, the stack of
+ * the dispatch thread is sampled until it returns. Each sample is attributed to the innermost frame of this
+ * application's code, along with the frame actually running, so the report names the offending call site and what it
+ * was waiting for.
+ *
+ * Modal dialogs dispatch events from inside the event that opened them. A nested event resets the timer when it
+ * returns, and the timer is stopped while the nested loop waits for the next event, so the time a dialog is open
+ * isn't reported as a stall of the event that opened it.
+ */
+public class EdtMonitor {
+
+    private static final String APPLICATION_PACKAGE = "ca.ubc.cs317.dict.";
+    private static final long PROBE_INTERVAL_MILLIS = 100;
+    private static final int BUCKETS = 12; // up to 2^10 ms, then everything above
+
+    private final long thresholdNanos;
+    private final long sampleIntervalMillis;
+    private final MonitoringQueue queue = new MonitoringQueue();
+    private final Thread watchdog;
+
+    private final long[] histogram = new long[BUCKETS];
+    private long maxLatencyNanos;
+    private final Map<String, CallSite> callSites = new HashMap<>();
+    private int stalls;
+
+    private volatile Thread dispatchThread;
+    private volatile long dispatchStart; // 0 while no event is being dispatched
+    private long probePosted;
+    private long lastStalledStart;
+
+    private EdtMonitor(long thresholdMillis, long sampleIntervalMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.sampleIntervalMillis = sampleIntervalMillis;
+        this.watchdog = new Thread(this::watch, "dict-edt-monitor");
+        this.watchdog.setDaemon(true);
+    }
+
+    /** Starts monitoring the event dispatch thread.
+     *
+     * @param thresholdMillis The time an event may take to dispatch before its stack is sampled.
+     * @param sampleIntervalMillis The time between stack samples while an event is over the threshold.
+     * @return The monitor, to be queried for a report.
+     */
+    public static EdtMonitor install(long thresholdMillis, long sampleIntervalMillis) {
+        EdtMonitor monitor = new EdtMonitor(thresholdMillis, sampleIntervalMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(monitor.queue);
+        monitor.watchdog.start();
+        return monitor;
+    }
+
+    /** Stops monitoring and restores the previous event queue. Events still queued are carried over. */
+    public void uninstall() {
+        watchdog.interrupt();
+        queue.uninstall();
+    }
+
+    /** Returns the number of events that took longer than the threshold to dispatch. */
+    public synchronized int getStallCount() {
+        return stalls;
+    }
+
+    /** Returns the application call sites seen in stack samples, most often sampled first. */
+    public synchronized List<String> getCallSites() {
+        List<CallSite> sorted = sortedCallSites();
+        List<String> names = new ArrayList<>(sorted.size());
+        for (CallSite site : sorted)
+            names.add(site.caller);
+        return names;
+    }
+
+    /** Returns a summary of the latency histogram and the call sites that blocked the event dispatch thread. */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        long probes = 0;
+        for (long count : histogram)
+            probes += count;
+        report.append("Event dispatch latency, ").append(probes).append(" probes, max ")
+                .append(TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos)).append(" ms:\n");
+        for (int i = 0; i < BUCKETS; i++) {
+            if (histogram[i] == 0)
+                continue;
+            String bound = i < BUCKETS - 1 ? "< " + (1L << i) + " ms" : ">= " + (1L << (BUCKETS - 2)) + " ms";
+            report.append(String.format("  %-10s %8d%n", bound, histogram[i]));
+        }
+        report.append("Events over ").append(TimeUnit.NANOSECONDS.toMillis(thresholdNanos)).append(" ms: ")
+                .append(stalls).append('\n');
+        for (CallSite site : sortedCallSites()) {
+            report.append(String.format("  %5d samples  %s%n", site.samples, site.caller));
+            report.append("                 in ").append(site.running).append('\n');
+        }
+        return report.toString();
+    }
+
+    private List<CallSite> sortedCallSites() {
+        List<CallSite> sorted = new ArrayList<>(callSites.values());
+        sorted.sort((a, b) -> Integer.compare(b.samples, a.samples));
+        return sorted;
+    }
+
+    private void watch() {
+        long nextProbe = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long now = System.nanoTime();
+            if (now >= nextProbe) {
+                postProbe(now);
+                nextProbe = now + TimeUnit.MILLISECONDS.toNanos(PROBE_INTERVAL_MILLIS);
+            }
+            long start = dispatchStart;
+            Thread thread = dispatchThread;
+            if (start != 0 && thread != null && now - start > thresholdNanos)
+                sample(thread, start);
+            try {
+                Thread.sleep(sampleIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void postProbe(long now) {
+        // Only one probe at a time, so a blocked thread doesn't pile them up
+        if (probePosted != 0)
+            return;
+        probePosted = now;
+        EventQueue.invokeLater(this::probeArrived);
+    }
+
+    private synchronized void probeArrived() {
+        long latency = System.nanoTime() - probePosted;
+        probePosted = 0;
+        long millis = TimeUnit.NANOSECONDS.toMillis(latency);
+        int bucket = millis == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+        histogram[bucket]++;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+    }
+
+    private void sample(Thread thread, long start) {
+        StackTraceElement[] stack = thread.getStackTrace();
+        // The event may have returned while the stack was taken
+        if (dispatchStart != start || stack.length == 0)
+            return;
+        StackTraceElement caller = applicationFrame(stack);
+
+        synchronized (this) {
+            if (start != lastStalledStart) {
+                lastStalledStart = start;
+                stalls++;
+            }
+            String key = caller + " " + stack[0];
+            CallSite site = callSites.computeIfAbsent(key, k -> new CallSite(caller.toString(), stack[0].toString()));
+            site.samples++;
+        }
+    }
+
+    /** Returns the innermost frame of this application's code, or the innermost frame if there is none. */
+    private static StackTraceElement applicationFrame(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String name = frame.getClassName();
+            if (name.startsWith(APPLICATION_PACKAGE) && !name.equals(EdtMonitor.class.getName())
+                    && !name.startsWith(EdtMonitor.class.getName() + "$"))
+                return frame;
+        }
+        return stack[0];
+    }
+
+    private class MonitoringQueue extends EventQueue {
+
+        private int depth; // events being dispatched, only touched on the dispatch thread
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            depth++;
+            dispatchThread = Thread.currentThread();
+            dispatchStart = System.nanoTime();
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                depth--;
+                // The outer event, if any, is only counted from when it resumes
+                dispatchStart = depth > 0 ? System.nanoTime() : 0;
+            }
+        }
+
+        @Override
+        public AWTEvent getNextEvent() throws InterruptedException {
+            if (depth == 0)
+                return super.getNextEvent();
+            // A nested loop, such as a modal dialog's, is waiting for input: the outer event isn't blocking the
+            // thread, it's waiting for the user
+            dispatchStart = 0;
+            AWTEvent event = super.getNextEvent();
+            dispatchStart = System.nanoTime();
+            return event;
+        }
+
+        void uninstall() {
+            pop();
+        }
+    }
+
+    private static class CallSite {
+        private final String caller;
+        private final String running;
+        private int samples;
+
+        CallSite(String caller, String running) {
+            this.caller = caller;
+            this.running = running;
+        }
+    }
+}
@@ -1,100 +1,140 @@
-package ca.ubc.cs317.dict.ui;
-
-import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
-import javax.swing.plaf.metal.MetalComboBoxEditor;
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
-
-/**
- * Created by Jonatan on 2017-09-10.
- */
-public class WordSearchField extends JComboBox<String> implements DocumentListener {
-
-    private DictionaryMain main;
-    private JTextField textField;
-
-    private DefaultComboBoxModel<String> model;
-
-    public WordSearchField(DictionaryMain main) {
-
-        this.setModel(model = new DefaultComboBoxModel<>());
-        this.main = main;
-
-        setEditable(true);
-        setEditor(new MetalComboBoxEditor() {
-
-            @Override
-            public void setItem(Object newItem) {
-                if (newItem != null &&
-                        !newItem.equals(((JTextField) getEditorComponent()).getText())) {
-                    super.setItem(newItem);
-                    // WordSearchField.this.main.showDefinitions();
-                }
-            }
-        });
-        textField = (JTextField) getEditor().getEditorComponent();
-        textField.getDocument().addDocumentListener(this);
-    }
-
-    public void reset() {
-        model.removeAllElements();
-        textField.setText("");
-    }
-
-    @Override
-    public void insertUpdate(DocumentEvent e) {
-        showSuggestions();
-    }
-
-    @Override
-    public void removeUpdate(DocumentEvent e) {
-        showSuggestions();
-    }
-
-    @Override
-    public void changedUpdate(DocumentEvent e) {
-        showSuggestions();
-    }
-
-
-    public void showSuggestions() {
-        final String typed = textField.getText();
-        model.removeAllElements();
-        if (typed.isEmpty())
-            return;
-
-        new SwingWorker<Set<String>, String>() {
-            String word = typed;
-
-            @Override
-            protected Set<String> doInBackground() throws Exception {
-                Set<String> matches = new LinkedHashSet<>();
-                matches.add(word);
-                matches.addAll(main.getMatchList(word));
-                return matches;
-            }
-
-            @Override
-            protected void done() {
-                // If user typed another character since this worker started, stop
-                if (!textField.getText().equals(word)) return;
-                try {
-                    for (String match : this.get()) {
-                        model.addElement(match);
-                    }
-                    if (model.getSize() > 1)
-                        showPopup();
-                    else
-                        hidePopup();
-                } catch (ExecutionException e) {
-                    main.handleException(e.getCause());
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        }.execute();
-    }
-}
+package ca.ubc.cs317.dict.ui;
+
+import ca.ubc.cs317.dict.net.RequestTimeoutException;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.plaf.metal.MetalComboBoxEditor;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Created by Jonatan on 2017-09-10.
+ */
+public class WordSearchField extends JComboBox<String> implements DocumentListener {
+
+    private DictionaryMain main;
+    private JTextField textField;
+
+    private DefaultComboBoxModel<String> model;
+    private boolean suppressSuggestions;
+
+    public WordSearchField(DictionaryMain main) {
+
+        this.setModel(model = new DefaultComboBoxModel<>());
+        this.main = main;
+
+        setEditable(true);
+        setEditor(new MetalComboBoxEditor() {
+
+            @Override
+            public void setItem(Object newItem) {
+                if (newItem != null &&
+                        !newItem.equals(((JTextField) getEditorComponent()).getText())) {
+                    super.setItem(newItem);
+                    // WordSearchField.this.main.showDefinitions();
+                }
+            }
+        });
+        textField = (JTextField) getEditor().getEditorComponent();
+        textField.getDocument().addDocumentListener(this);
+    }
+
+    public void reset() {
+        model.removeAllElements();
+        textField.setText("");
+    }
+
+    /** Puts a word in the field without asking for suggestions, as when it was chosen elsewhere rather than typed.
+     *
+     * @param word The word shown and selected.
+     */
+    public void showWord(String word) {
+        hidePopup();
+        suppressSuggestions = true;
+        try {
+            model.removeAllElements();
+            model.addElement(word);
+            model.setSelectedItem(word);
+            textField.setText(word);
+        } finally {
+            suppressSuggestions = false;
+        }
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        if (!suppressSuggestions)
+            showSuggestions();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        if (!suppressSuggestions)
+            showSuggestions();
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        if (!suppressSuggestions)
+            showSuggestions();
+    }
+
+
+    public void showSuggestions() {
+        final String typed = textField.getText();
+        main.cancelPrefetch();
+        model.removeAllElements();
+        if (typed.isEmpty())
+            return;
+
+        // Earlier searches are shown right away; matches from the server are added below them when they arrive
+        Set<String> shown = new LinkedHashSet<>();
+        shown.add(typed);
+        shown.addAll(main.getHistorySuggestions(typed));
+        model.addAll(shown);
+        if (model.getSelectedItem() == null)
+            model.setSelectedItem(model.getElementAt(0));
+        if (model.getSize() > 1)
+            showPopup();
+
+        new SwingWorker<Set<String>, String>() {
+            String word = typed;
+
+            @Override
+            protected Set<String> doInBackground() throws Exception {
+                Set<String> matches = new LinkedHashSet<>();
+                matches.add(word);
+                matches.addAll(main.getMatchList(word));
+                return matches;
+            }
+
+            @Override
+            protected void done() {
+                // If user typed another character since this worker started, stop
+                if (!textField.getText().equals(word)) return;
+                try {
+                    Set<String> matches = this.get();
+                    matches.removeAll(shown);
+                    // One insertion event for the whole list, rather than one per suggestion
+                    model.addAll(matches);
+                    shown.addAll(matches);
+                    if (model.getSize() > 1) {
+                        showPopup();
+                        main.prefetchDefinitions(new ArrayList<>(shown));
+                    } else
+                        hidePopup();
+                } catch (ExecutionException e) {
+                    // Matches that came too late are dropped; the next keystroke asks again
+                    if (!(e.getCause() instanceof RequestTimeoutException))
+                        main.handleException(e.getCause());
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+}
@@ -0,0 +1,81 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LinkPrefetcherTest {
+
+    private static final Database WN = new Database("wn", "WordNet");
+
+    private static Definition definition(String word, String body) {
+        Definition definition = new Definition(word, WN.getName());
+        definition.setDefinition(body);
+        return definition;
+    }
+
+    @Test
+    public void testExtractReferences() {
+        Definition definition = definition("apple", "apple\n  fruit of the {apple\n   tree}; see also {pear}, {Pear},\n" +
+                "  {pear} and {} or an unbalanced { brace {quince}");
+        assertEquals(List.of("apple tree", "pear", "Pear", "quince"), CrossReferences.extract(definition));
+        assertEquals(List.of(), CrossReferences.extract(definition("apple", "no references")));
+    }
+
+    @Test
+    public void testFollowsReferencesUpToDepthAndBudget() throws InterruptedException {
+        // Each word refers to two others: w refers to w0 and w1, w0 to w00 and w01, and so on
+        List<String> requested = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(6);
+        DefinitionCache cache = new DefinitionCache(100, 60000);
+        LinkPrefetcher prefetcher = new LinkPrefetcher((word, database) -> {
+            requested.add(word);
+            done.countDown();
+            return List.of(definition(word, "{" + word + "0} {" + word + "1} {" + word + "}"));
+        }, cache, 2, 5);
+
+        prefetcher.follow(List.of(definition("w", "{w0} {w1} {w}")));
+        assertFalse(done.await(500, TimeUnit.MILLISECONDS));
+        prefetcher.close();
+
+        // Breadth first: the page's own references before theirs, and nothing past the budget or depth
+        assertEquals(List.of("w0", "w1", "w00", "w01", "w10"), requested);
+        assertTrue(cache.contains("w10", WN));
+        assertFalse(cache.contains("w", WN));
+    }
+
+    @Test
+    public void testNewPageDropsQueuedRequests() throws InterruptedException {
+        List<String> requested = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DefinitionCache cache = new DefinitionCache(100, 60000);
+        LinkPrefetcher prefetcher = new LinkPrefetcher((word, database) -> {
+            requested.add(word);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(definition(word, word));
+        }, cache, 1, 10);
+
+        prefetcher.follow(List.of(definition("a", "{a1} {a2} {a3}")));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        prefetcher.follow(List.of(definition("b", "{b1} {a2}")));
+        release.countDown();
+        Thread.sleep(200);
+        prefetcher.close();
+
+        assertEquals(List.of("a1", "b1", "a2"), requested);
+    }
+}
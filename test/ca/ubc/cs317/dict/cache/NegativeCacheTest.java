@@ -0,0 +1,114 @@
+package ca.ubc.cs317.dict.cache;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NegativeCacheTest {
+
+    private static final Database WN = new Database("wn", "WordNet");
+    private static final Database GCIDE = new Database("gcide", "GCIDE");
+    private static final MatchingStrategy PREFIX = new MatchingStrategy("prefix", "Match prefixes");
+    private static final MatchingStrategy EXACT = new MatchingStrategy("exact", "Match headwords exactly");
+
+    @Test
+    public void testBloomFilterHasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10000, 0.01, 1 << 20);
+        for (int i = 0; i < 10000; i++)
+            filter.add("word" + i);
+        for (int i = 0; i < 10000; i++)
+            assertTrue(filter.mightContain("word" + i));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("other" + i))
+                falsePositives++;
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    public void testBloomFilterRespectsMemoryBudget() {
+        BloomFilter filter = new BloomFilter(100000, 0.001, 1024);
+        assertEquals(1024, filter.sizeInBytes());
+        for (int i = 0; i < 100000; i++)
+            filter.add("word" + i);
+        assertTrue(filter.mightContain("word99999"));
+        assertTrue(filter.expectedFalsePositiveRate() > 0.5);
+    }
+
+    @Test
+    public void testRecentMisses() {
+        NegativeCache cache = new NegativeCache(100, 60000, 0.01, 1 << 16, 60000);
+        assertFalse(cache.isDefineAbsent("parot", WN));
+        cache.recordDefineMiss("parot", WN);
+        assertTrue(cache.isDefineAbsent("parot", WN));
+        assertTrue(cache.isDefineAbsent("Parot", WN));
+        assertFalse(cache.isDefineAbsent("parot", GCIDE));
+
+        cache.recordMatchMiss("xyz", PREFIX, WN);
+        assertTrue(cache.isMatchAbsent("xyzzy", PREFIX, WN));
+        assertFalse(cache.isMatchAbsent("xy", PREFIX, WN));
+        assertFalse(cache.isMatchAbsent("xyz", EXACT, WN));
+    }
+
+    @Test
+    public void testMissesOnlyAnswerTheSameQuery() {
+        NegativeCache cache = new NegativeCache(100, 60000, 0.01, 1 << 16, 60000);
+        MatchingStrategy substring = new MatchingStrategy("substring", "Match substring occurring anywhere");
+        MatchingStrategy re = new MatchingStrategy("re", "POSIX 1003.2 (modern) regular expressions");
+
+        cache.recordMatchMiss("a b", substring, WN);
+        assertTrue(cache.isMatchAbsent("A B", substring, WN));
+        assertFalse(cache.isMatchAbsent("ab", substring, WN));
+        assertFalse(cache.isMatchAbsent("a bc", substring, WN)); // only prefix misses answer longer queries
+
+        cache.recordMatchMiss("^qx.*z$", re, WN);
+        assertFalse(cache.isMatchAbsent("qxz", re, WN));
+
+        // Databases built with --allchars tell these apart
+        cache.recordDefineMiss("re-cover", WN);
+        assertTrue(cache.isDefineAbsent("re-cover", WN));
+        assertFalse(cache.isDefineAbsent("recover", WN));
+    }
+
+    @Test
+    public void testMissesExpire() throws InterruptedException {
+        NegativeCache cache = new NegativeCache(100, 20, 0.01, 1 << 16, 60000);
+        cache.recordDefineMiss("parot", WN);
+        Thread.sleep(40);
+        assertFalse(cache.isDefineAbsent("parot", WN));
+    }
+
+    @Test
+    public void testHeadwordFilter() {
+        NegativeCache cache = new NegativeCache(100, 60000, 0.01, 1 << 16, 60000);
+        List<String> headwords = new ArrayList<>(Arrays.asList("parrot", "New York", "apple"));
+        for (int i = 0; i < 1000; i++)
+            headwords.add("word" + i);
+        cache.loadHeadwords(WN, headwords);
+
+        assertTrue(cache.hasHeadwords(WN));
+        assertFalse(cache.hasHeadwords(GCIDE));
+        assertFalse(cache.isDefineAbsent("PARROT", WN));
+        assertFalse(cache.isDefineAbsent("new-york", WN));
+        assertFalse(cache.isMatchAbsent("apple", EXACT, WN));
+        assertFalse(cache.isDefineAbsent("parot", GCIDE));
+        // Prefixes of headwords are not headwords, but the filter only answers exact lookups
+        assertFalse(cache.isMatchAbsent("par", PREFIX, WN));
+
+        int absent = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.isDefineAbsent("missing" + i, WN))
+                absent++;
+        }
+        assertTrue(absent > 950, "absent: " + absent);
+    }
+}
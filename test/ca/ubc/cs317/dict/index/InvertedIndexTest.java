@@ -0,0 +1,125 @@
+package ca.ubc.cs317.dict.index;
+
+import ca.ubc.cs317.dict.model.Definition;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvertedIndexTest {
+
+    private static Definition definition(String word, String database, String body) {
+        Definition d = new Definition(word, database);
+        d.setDefinition(body);
+        return d;
+    }
+
+    @Test
+    public void testTermQueryRanking() throws IOException {
+        InvertedIndex index = new InvertedIndex(Files.createTempDirectory("index"));
+        index.add(definition("parrot", "wn", "usually brightly colored zygodactyl tropical bird"));
+        index.add(definition("sparrow", "wn", "small bird; bird of the finch family"));
+        index.add(definition("carrot", "wn", "orange root vegetable"));
+        index.flush();
+
+        List<IndexHit> hits = index.search("bird", 10);
+        assertEquals(2, hits.size());
+        assertEquals("sparrow", hits.get(0).getWord());
+        assertEquals("parrot", hits.get(1).getWord());
+        assertTrue(index.search("airplane", 10).isEmpty());
+        index.close();
+    }
+
+    @Test
+    public void testPhraseQuery() throws IOException {
+        InvertedIndex index = new InvertedIndex(Files.createTempDirectory("index"));
+        index.add(definition("parrot", "wn", "a tropical bird with bright colours"));
+        index.add(definition("toucan", "wn", "a bird of tropical America"));
+        index.flush();
+
+        List<IndexHit> hits = index.search("\"tropical bird\"", 10);
+        assertEquals(1, hits.size());
+        assertEquals("parrot", hits.get(0).getWord());
+        index.close();
+    }
+
+    @Test
+    public void testInterruptedMergeDoesNotDuplicateDefinitions() throws IOException {
+        Path directory = Files.createTempDirectory("index");
+        Path saved = Files.createTempDirectory("saved");
+        InvertedIndex index = new InvertedIndex(directory);
+        for (int i = 0; i < 3; i++) {
+            index.add(definition("word" + i, "db", "body number " + i + " shared"));
+            index.flush();
+        }
+        List<Path> early = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(early::add);
+        }
+        for (Path file : early)
+            Files.copy(file, saved.resolve(file.getFileName()));
+        for (int i = 3; i < 12; i++) {
+            index.add(definition("word" + i, "db", "body number " + i + " shared"));
+            index.flush();
+        }
+        index.close();
+
+        // As if the merge had stopped before deleting the segments it replaced
+        for (Path file : early)
+            Files.copy(saved.resolve(file.getFileName()), file);
+        InvertedIndex reopened = new InvertedIndex(directory);
+        reopened.flush();
+        assertEquals(12, reopened.getDocumentCount());
+        assertEquals(12, reopened.search("shared", 20).size());
+        for (Path file : early)
+            assertFalse(Files.exists(file));
+        reopened.close();
+    }
+
+    @Test
+    public void testBufferSearchableWithoutFlush() throws Exception {
+        InvertedIndex index = new InvertedIndex(Files.createTempDirectory("index"));
+        for (int i = 0; i < 500; i++)
+            index.add(definition("word" + i, "db", "body " + i));
+
+        // Published once the queue runs empty, without a segment being written
+        long deadline = System.currentTimeMillis() + 5000;
+        while (index.getDocumentCount() < 500 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(500, index.getDocumentCount());
+        assertEquals("word42", index.search("42", 10).get(0).getWord());
+        index.close();
+    }
+
+    @Test
+    public void testPersistenceAndMerge() throws IOException {
+        Path directory = Files.createTempDirectory("index");
+        InvertedIndex index = new InvertedIndex(directory);
+        for (int i = 0; i < 12; i++) {
+            index.add(definition("word" + i, "db", "body number " + i + " shared"));
+            index.flush(); // one segment per definition, forcing a merge
+        }
+        index.add(definition("word0", "db", "body number 0 shared")); // already indexed
+        index.close();
+
+        InvertedIndex reopened = new InvertedIndex(directory);
+        reopened.flush(); // segments are read in the background
+        assertEquals(12, reopened.getDocumentCount());
+        assertEquals(12, reopened.search("shared", 20).size());
+        assertEquals("word7", reopened.search("7", 20).get(0).getWord());
+
+        List<Definition> bulk = new ArrayList<>();
+        for (int i = 0; i < 2500; i++)
+            bulk.add(definition("bulk" + i, "db", "bulk body " + i));
+        reopened.addAll(bulk);
+        reopened.flush();
+        assertEquals(2512, reopened.getDocumentCount());
+        reopened.close();
+    }
+}
@@ -0,0 +1,144 @@
+package ca.ubc.cs317.dict.index;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalMatcherTest {
+
+    private static final Database WN = new Database("wn", "WordNet");
+    private static final MatchingStrategy LEV = new MatchingStrategy("lev", "Levenshtein distance one");
+    private static final MatchingStrategy PREFIX = new MatchingStrategy("prefix", "Match prefixes");
+    private static final MatchingStrategy EXACT = new MatchingStrategy("exact", "Match headwords exactly");
+    private static final MatchingStrategy SOUNDEX = new MatchingStrategy("soundex", "Match using SOUNDEX algorithm");
+
+    @Test
+    public void testLevenshteinMatches() {
+        LocalMatcher matcher = new LocalMatcher(60000);
+        matcher.load(WN, Arrays.asList("parrot", "Parrot", "carrot", "parrots", "pirate", "prarot", "apple"));
+
+        Set<String> matches = matcher.match("parrot", LEV, WN);
+        assertEquals(Set.of("parrot", "Parrot", "carrot", "parrots", "prarot"), matches);
+        assertEquals(Set.of("apple"), matcher.match("aplpe", LEV, WN));
+    }
+
+    @Test
+    public void testLevenshteinFoldsQueryLikeHeadwords() {
+        LocalMatcher matcher = new LocalMatcher(60000);
+        matcher.load(WN, Arrays.asList("Paris"));
+        // Folded as a whole, the dotted capital I becomes two chars, which costs one more edit
+        assertEquals(Set.of("Paris"), matcher.match("PAR\u0130SS", LEV, WN));
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr"));
+        try {
+            assertEquals(Set.of("Paris"), matcher.match("PARISS", LEV, WN));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testSoundexMatches() {
+        assertEquals("R163", Soundex.encode("Robert"));
+        assertEquals("R163", Soundex.encode("Rupert"));
+        assertEquals("A261", Soundex.encode("Ashcraft"));
+        assertEquals("T522", Soundex.encode("Tymczak"));
+
+        LocalMatcher matcher = new LocalMatcher(60000);
+        matcher.load(WN, Arrays.asList("Robert", "Rupert", "Rubin"));
+        assertEquals(Set.of("Robert", "Rupert"), matcher.match("rupurt", SOUNDEX, WN));
+    }
+
+    @Test
+    public void testSnapshotPrefixAndExact() throws IOException {
+        Path directory = Files.createTempDirectory("headwords");
+        LocalMatcher matcher = new LocalMatcher(60000, directory);
+        matcher.load(WN, Arrays.asList("parrot", "Paris", "parrots", "park", "apple"));
+        assertEquals(Arrays.asList("Paris", "park", "parrot", "parrots"),
+                new ArrayList<>(matcher.match("par", PREFIX, WN)));
+
+        // A new matcher maps the snapshot written by the first one
+        LocalMatcher reopened = new LocalMatcher(60000, directory);
+        assertTrue(reopened.isAvailable(WN));
+        assertEquals(Set.of("Paris"), reopened.match("paris", EXACT, WN));
+        assertEquals(Arrays.asList("parrot", "parrots"), new ArrayList<>(reopened.match("parr", PREFIX, WN)));
+        assertEquals(Set.of("parrot"), reopened.match("parot", LEV, WN));
+        assertEquals(Set.of("Paris"), reopened.match("pariss", LEV, WN));
+    }
+
+    @Test
+    public void testDamagedSnapshotTreatedAsMissing() throws IOException {
+        Path directory = Files.createTempDirectory("headwords");
+        new LocalMatcher(60000, directory).load(WN, Arrays.asList("parrot", "parrots", "park"));
+        Path file = directory.resolve("wn.headwords");
+        byte[] data = Files.readAllBytes(file);
+
+        // Truncated
+        Files.write(file, Arrays.copyOf(data, data.length - 5));
+        assertNull(new LocalMatcher(60000, directory).match("par", PREFIX, WN));
+
+        // Node count larger than the file
+        byte[] bigger = data.clone();
+        bigger[4] = 0x7f;
+        Files.write(file, bigger);
+        assertNull(new LocalMatcher(60000, directory).match("par", PREFIX, WN));
+
+        // A child link pointing outside the tables
+        byte[] badLink = data.clone();
+        int nodes = ((data[4] & 0xff) << 24) | ((data[5] & 0xff) << 16) | ((data[6] & 0xff) << 8) | (data[7] & 0xff);
+        int firstChild = 12 + ((nodes * 2 + 3) & ~3);
+        Arrays.fill(badLink, firstChild, firstChild + 4, (byte) 0x40);
+        Files.write(file, badLink);
+        assertNull(new LocalMatcher(60000, directory).match("par", PREFIX, WN));
+
+        // Not a snapshot at all
+        Files.write(file, new byte[] {1, 2, 3});
+        LocalMatcher matcher = new LocalMatcher(60000, directory);
+        assertFalse(matcher.isAvailable(WN));
+
+        // The next load replaces the damaged file
+        matcher.load(WN, Arrays.asList("parrot"));
+        assertEquals(Set.of("parrot"), new LocalMatcher(60000, directory).match("parrot", EXACT, WN));
+    }
+
+    @Test
+    public void testDamagedLinkOnlyFailsLookupsReachingIt() throws IOException {
+        Path directory = Files.createTempDirectory("headwords");
+        new LocalMatcher(60000, directory).load(WN, Arrays.asList("parrot", "parrots", "park", "zebra"));
+        Path file = directory.resolve("wn.headwords");
+        byte[] data = Files.readAllBytes(file);
+
+        // Nodes in depth-first order: root, p, a, r, k, r, o, t, s, z, e, b, r, a. Damage the child link of "parr".
+        int nodes = ((data[4] & 0xff) << 24) | ((data[5] & 0xff) << 16) | ((data[6] & 0xff) << 8) | (data[7] & 0xff);
+        assertEquals(14, nodes);
+        int firstChild = 12 + ((nodes * 2 + 3) & ~3);
+        Arrays.fill(data, firstChild + 5 * 4, firstChild + 6 * 4, (byte) 0x40);
+        Files.write(file, data);
+
+        LocalMatcher matcher = new LocalMatcher(60000, directory);
+        assertEquals(Set.of("zebra"), matcher.match("zebra", EXACT, WN));
+        assertEquals(Set.of("park"), matcher.match("park", EXACT, WN));
+        assertNull(matcher.match("parr", PREFIX, WN));
+        assertFalse(matcher.isAvailable(WN));
+    }
+
+    @Test
+    public void testFallsBackWhenUnavailable() {
+        LocalMatcher matcher = new LocalMatcher(0);
+        matcher.load(WN, Arrays.asList("parrot"));
+        assertNull(matcher.match("parrot", LEV, WN)); // stale immediately
+        assertNull(new LocalMatcher(60000).match("parrot", LEV, WN));
+        assertNull(new LocalMatcher(60000).match("parrot", new MatchingStrategy("re", "Regular expressions"), WN));
+    }
+}
@@ -0,0 +1,99 @@
+package ca.ubc.cs317.dict.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryHistoryTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void testRanksByDecayedFrequency() throws IOException {
+        QueryHistory history = new QueryHistory(Files.createTempDirectory("history").resolve("log"), 100, 7 * DAY);
+        for (int i = 0; i < 4; i++)
+            history.record("parrot", i);
+        history.record("Parse", 30 * DAY);
+        history.record("parse", 30 * DAY);
+        history.record("apple", 30 * DAY);
+
+        // Four searches a month ago have decayed below two today
+        assertEquals(List.of("parse", "parrot"), history.suggest("PA", 10, 30 * DAY));
+        assertEquals(List.of("parse"), history.suggest("par", 1, 30 * DAY));
+        assertEquals(List.of(), history.suggest("q", 10, 30 * DAY));
+        history.close();
+    }
+
+    @Test
+    public void testEvictsLowestRanked() throws IOException {
+        QueryHistory history = new QueryHistory(Files.createTempDirectory("history").resolve("log"), 2, DAY);
+        history.record("one", 0);
+        history.record("one", 0);
+        history.record("two", 0);
+        history.record("three", 0);
+        assertEquals(2, history.size());
+        assertEquals(List.of("one", "three"), history.suggest("", 10, 0));
+        history.close();
+    }
+
+    @Test
+    public void testReopenDropsTornRecord() throws IOException {
+        Path file = Files.createTempDirectory("history").resolve("log");
+        QueryHistory history = new QueryHistory(file, 100, DAY);
+        history.record("parrot", 0);
+        history.record("parrot", 0);
+        history.record("carrot", 0);
+        history.close();
+
+        // A record cut short, as if the process died halfway through writing it
+        Files.write(file, new byte[]{0, 20, 1, 0}, StandardOpenOption.APPEND);
+        long intact = Files.size(file) - 4;
+        history = new QueryHistory(file, 100, DAY);
+        assertEquals(List.of("parrot", "carrot"), history.suggest("", 10, 0));
+        assertEquals(intact, Files.size(file));
+
+        history.record("apple", 0);
+        history.close();
+        history = new QueryHistory(file, 100, DAY);
+        assertEquals(3, history.size());
+        history.close();
+    }
+
+    @Test
+    public void testDamagedLogReplacedByEmptyHistory() throws IOException {
+        Path file = Files.createTempDirectory("history").resolve("log");
+        Files.write(file, "not a history log".getBytes(StandardCharsets.US_ASCII));
+
+        QueryHistory history = new QueryHistory(file, 100, DAY);
+        assertEquals(0, history.size());
+        history.record("parrot", 0);
+        history.close();
+
+        history = new QueryHistory(file, 100, DAY);
+        assertEquals(List.of("parrot"), history.suggest("", 10, 0));
+        history.close();
+    }
+
+    @Test
+    public void testCompactionKeepsScores() throws IOException {
+        Path file = Files.createTempDirectory("history").resolve("log");
+        QueryHistory history = new QueryHistory(file, 100, DAY);
+        for (int i = 0; i < 100; i++)
+            history.record(i % 3 == 0 ? "often" : "word" + i % 2, i);
+        history.close();
+        List<String> before = history.suggest("", 10, 100);
+
+        history = new QueryHistory(file, 100, DAY);
+        assertEquals(before, history.suggest("", 10, 100));
+        // One record per word after the last compaction, plus the searches since
+        assertTrue(Files.size(file) < 100 * 20, "log size: " + Files.size(file));
+        history.close();
+    }
+}
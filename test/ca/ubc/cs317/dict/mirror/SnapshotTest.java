@@ -0,0 +1,71 @@
+package ca.ubc.cs317.dict.mirror;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+
+    private static final Database WN = new Database("wn", "WordNet");
+    private static final Database GCIDE = new Database("gcide", "Collaborative International Dictionary");
+    private static final Database ALL = new Database("*", "All");
+
+    private Snapshot write() throws IOException {
+        Path directory = Files.createTempDirectory("mirror");
+        Path file = directory.resolve("test.mirror");
+        try (SnapshotWriter writer = new SnapshotWriter(List.of(WN, GCIDE), new long[]{1, 2}, directory)) {
+            // Added out of order, as the fetch threads deliver them
+            writer.add("parrot", 1, SnapshotWriter.compress("a bird that talks"));
+            writer.add("ice cream", 0, SnapshotWriter.compress("frozen dessert"));
+            writer.add("caf\u00e9", 1, SnapshotWriter.compress("a coffee house, caf\u00e9 au lait"));
+            writer.add("Caf\u00e9", 0, SnapshotWriter.compress("a small restaurant"));
+            writer.add("parrot", 0, SnapshotWriter.compress("a bird"));
+            writer.write(file);
+        }
+        return Snapshot.open(file);
+    }
+
+    private static List<String> describe(List<Definition> definitions) {
+        List<String> result = new ArrayList<>();
+        for (Definition definition : definitions)
+            result.add(definition.getWord() + "/" + definition.getDatabaseName() + ": " + definition.getDefinition());
+        return result;
+    }
+
+    @Test
+    public void testMultiWordHeadwords() throws IOException {
+        Snapshot snapshot = write();
+        assertEquals(5, snapshot.size());
+        assertEquals(List.of(WN, GCIDE), snapshot.getDatabases());
+        assertEquals(List.of("ice cream/wn: frozen dessert"), describe(snapshot.getDefinitions("Ice Cream", ALL)));
+        assertEquals(List.of("ice cream/wn: frozen dessert"), describe(snapshot.getDefinitions("ice cream", WN)));
+        assertTrue(snapshot.getDefinitions("ice", ALL).isEmpty());
+        assertTrue(snapshot.getDefinitions("ice cream", GCIDE).isEmpty());
+    }
+
+    @Test
+    public void testAccentedHeadwords() throws IOException {
+        Snapshot snapshot = write();
+        // Case is folded, accents are not; definitions come out in server database order
+        assertEquals(List.of("Caf\u00e9/wn: a small restaurant", "caf\u00e9/gcide: a coffee house, caf\u00e9 au lait"),
+                describe(snapshot.getDefinitions("CAF\u00c9", ALL)));
+        assertTrue(snapshot.getDefinitions("cafe", ALL).isEmpty());
+    }
+
+    @Test
+    public void testFirstMatchAndDatabaseOrder() throws IOException {
+        Snapshot snapshot = write();
+        assertEquals(List.of("parrot/wn: a bird", "parrot/gcide: a bird that talks"),
+                describe(snapshot.getDefinitions("parrot", ALL)));
+        assertEquals(List.of("parrot/wn: a bird"), describe(snapshot.getDefinitions("parrot", new Database("!", "Any"))));
+        assertTrue(snapshot.getDefinitions("parrot", new Database("foldoc", "FOLDOC")).isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package ca.ubc.cs317.dict.net;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testOverloadHalvesLimitOncePerWindow() throws DictConnectionException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 8, 0, 0);
+        long first = limiter.acquire();
+        long second = limiter.acquire();
+        limiter.dropped(first);
+        assertEquals(4, limiter.getLimit());
+        // Started before the decrease, so it reports the same burst of overload
+        limiter.dropped(second);
+        assertEquals(4, limiter.getLimit());
+
+        limiter.dropped(limiter.acquire());
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitGrowsOnlyWhileInUse() throws DictConnectionException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 4, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            long ticket = limiter.acquire();
+            limiter.success(ticket, ticket);
+        }
+        // One request at a time never uses more than half of a limit of 2
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            long first = limiter.acquire();
+            long second = limiter.acquire();
+            limiter.success(first, first);
+            limiter.success(second, second);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testRequestsOverLimitAreShed() throws DictConnectionException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 0, 1000);
+        long ticket = limiter.acquire();
+        assertThrows(DictConnectionException.class, limiter::acquire);
+        limiter.success(ticket, ticket);
+        limiter.ignore(limiter.acquire());
+    }
+
+    @Test
+    public void testQueuedRequestTimesOut() throws DictConnectionException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 50);
+        limiter.acquire();
+        long start = System.nanoTime();
+        assertThrows(DictConnectionException.class, limiter::acquire);
+        assertTrue(System.nanoTime() - start >= 40_000_000L);
+    }
+}
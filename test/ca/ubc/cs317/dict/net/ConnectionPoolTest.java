@@ -0,0 +1,67 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    @Test
+    public void testRetriesRequestOnDroppedIdleConnection() throws Exception {
+        try (FakeDictServer server = new FakeDictServer().database("wn", Map.of("parrot", "a bird"))) {
+            ConnectionPool pool = new ConnectionPool("localhost", server.getPort(), 2);
+            try {
+                Database wn = new Database("wn", "WordNet");
+                assertEquals(1, pool.getDefinitions("parrot", wn).size());
+
+                // The server closes the idle session; the next request notices only when it reads the reply
+                server.dropSessions();
+                Thread.sleep(100);
+                assertEquals(1, pool.getDefinitions("parrot", wn).size());
+                assertEquals(2, server.getAccepted());
+            } finally {
+                pool.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFailedConnectionIsAbortedBeforeItsSlotIsFreed() throws Exception {
+        try (FakeDictServer server = new FakeDictServer().database("wn", Map.of("parrot", "a bird"))) {
+            ConnectionPool pool = new ConnectionPool("localhost", server.getPort(), 1);
+            try {
+                Database wn = new Database("wn", "WordNet");
+                assertThrows(DictConnectionException.class, () -> pool.execute(c -> {
+                    c.getDefinitions("parrot", wn);
+                    throw new DictConnectionException("reply not as expected");
+                }));
+                // The single slot is free again, and the failed session was closed without QUIT
+                assertEquals(1, pool.getDefinitions("parrot", wn).size());
+                assertEquals(2, server.getAccepted());
+                assertFalse(server.getCommands().contains("QUIT"));
+            } finally {
+                pool.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFailureAfterReplyIsNotRetried() throws Exception {
+        try (FakeDictServer server = new FakeDictServer().database("wn", Map.of("parrot", "a bird"))) {
+            ConnectionPool pool = new ConnectionPool("localhost", server.getPort(), 2);
+            try {
+                Database wn = new Database("wn", "WordNet");
+                assertEquals(1, pool.getDefinitions("parrot", wn).size());
+
+                // The fake server answers SHOW INFO with a database list, so the request fails after a reply arrived
+                assertThrows(DictConnectionException.class, () -> pool.execute(c -> c.getDatabaseInfo(wn)));
+                assertEquals(1, server.getAccepted());
+            } finally {
+                pool.close();
+            }
+        }
+    }
+}
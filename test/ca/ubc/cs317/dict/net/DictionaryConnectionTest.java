@@ -5,13 +5,28 @@ import ca.ubc.cs317.dict.model.Definition;
 import ca.ubc.cs317.dict.model.MatchingStrategy;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class DictionaryConnectionTest {
+    @Test
+    public void testQuotedHeadwordsInDefinitionHeaders() throws Exception {
+        try (FakeDictServer server = new FakeDictServer()
+                .database("wn", Map.of("ice cream", "frozen dessert", "caf\u00e9", "coffee house"))) {
+            DictionaryConnection conn = new DictionaryConnection("localhost", server.getPort());
+            List<String> received = new ArrayList<>();
+            conn.getDefinitions(List.of("ice cream", "caf\u00e9"), new Database("wn", "WordNet"), (word, definition) ->
+                    received.add(word + "|" + definition.getWord() + "|" + definition.getDatabaseName()));
+            conn.close();
+            assertEquals(List.of("ice cream|ice cream|wn", "caf\u00e9|caf\u00e9|wn"), received);
+        }
+    }
+
     @Test
     public void testBasicConnection() throws DictConnectionException {
         DictionaryConnection conn = new DictionaryConnection("dict.org");
@@ -0,0 +1,212 @@
+package ca.ubc.cs317.dict.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small DICT server for tests, answering SHOW DATABASES, SHOW INFO, DEFINE and MATCH (prefix and exact) from fixed
+ * word lists. Replies from a database can be delayed, and open sessions can be dropped to simulate a server closing
+ * idle connections.
+ */
+class FakeDictServer implements AutoCloseable {
+
+    private final ServerSocket server = new ServerSocket(0);
+    private final Map<String, Map<String, String>> databases = new LinkedHashMap<>();
+    private final Map<String, Long> delays = new ConcurrentHashMap<>();
+    private final Map<String, String> infos = new ConcurrentHashMap<>();
+    private final List<Socket> sessions = new CopyOnWriteArrayList<>();
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    FakeDictServer() throws IOException {
+        Thread thread = new Thread(this::accept, "fake-dict");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Adds a database, listed after those added before it, holding the given words and their definitions. */
+    synchronized FakeDictServer database(String name, Map<String, String> definitions) {
+        databases.put(name, new LinkedHashMap<>(definitions));
+        return this;
+    }
+
+    /** Sets the text SHOW INFO returns for a database. */
+    FakeDictServer info(String name, String text) {
+        infos.put(name, text);
+        return this;
+    }
+
+    /** Delays every reply from a database. */
+    void delay(String name, long millis) {
+        delays.put(name, millis);
+    }
+
+    /** Closes every open session from the server side, as a server does with idle connections. */
+    void dropSessions() throws IOException {
+        for (Socket socket : sessions)
+            socket.close();
+        sessions.clear();
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    int getAccepted() {
+        return accepted.get();
+    }
+
+    /** Returns the commands received so far, in the order they arrived. */
+    List<String> getCommands() {
+        return new ArrayList<>(commands);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        dropSessions();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                accepted.incrementAndGet();
+                sessions.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "fake-dict-session");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException e) {
+            // Closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), false, StandardCharsets.UTF_8);
+            out.print("220 fake <auth> <1@fake>\r\n");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                commands.add(line);
+                String[] atoms = DictStringParser.splitAtoms(line);
+                String command = atoms.length > 0 ? atoms[0].toUpperCase() : "";
+                if (command.equals("QUIT")) {
+                    out.print("221 bye\r\n");
+                    out.flush();
+                    return;
+                } else if (command.equals("STATUS")) {
+                    out.print("210 ok\r\n");
+                } else if (command.equals("SHOW") && atoms.length == 3 && atoms[1].equalsIgnoreCase("INFO")) {
+                    showInfo(out, atoms[2]);
+                } else if (command.equals("SHOW")) {
+                    showDatabases(out);
+                } else if (command.equals("DEFINE") && atoms.length == 3) {
+                    define(out, atoms[1], atoms[2]);
+                } else if (command.equals("MATCH") && atoms.length == 4) {
+                    match(out, atoms[1], atoms[2], atoms[3]);
+                } else {
+                    out.print("500 unknown command\r\n");
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away, or the session was dropped
+        } finally {
+            sessions.remove(socket);
+        }
+    }
+
+    private synchronized List<String> names(String database) {
+        if (database.equals("*") || database.equals("!"))
+            return new ArrayList<>(databases.keySet());
+        return databases.containsKey(database) ? List.of(database) : List.of();
+    }
+
+    private synchronized Map<String, String> words(String database) {
+        return new LinkedHashMap<>(databases.get(database));
+    }
+
+    private void pause(String database) {
+        Long millis = delays.get(database);
+        if (millis == null)
+            return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void showDatabases(PrintWriter out) {
+        out.print("110 " + databases.size() + " databases present\r\n");
+        for (String name : databases.keySet())
+            out.print(name + " \"" + name.toUpperCase() + "\"\r\n");
+        out.print(".\r\n250 ok\r\n");
+    }
+
+    private void showInfo(PrintWriter out, String database) {
+        String text = infos.get(database);
+        if (text == null) {
+            out.print("550 invalid database\r\n");
+            return;
+        }
+        out.print("112 database information follows\r\n" + text.replace("\n", "\r\n") + "\r\n.\r\n250 ok\r\n");
+    }
+
+    private void define(PrintWriter out, String database, String word) {
+        List<String> found = new ArrayList<>();
+        for (String name : names(database)) {
+            pause(name);
+            String text = words(name).get(word);
+            if (text == null)
+                continue;
+            found.add("151 \"" + word + "\" " + name + " \"" + name.toUpperCase() + "\"\r\n" + text + "\r\n.\r\n");
+            if (database.equals("!"))
+                break;
+        }
+        if (found.isEmpty()) {
+            out.print("552 no match\r\n");
+            return;
+        }
+        out.print("150 " + found.size() + " definitions retrieved\r\n");
+        found.forEach(out::print);
+        out.print("250 ok\r\n");
+    }
+
+    private void match(PrintWriter out, String database, String strategy, String word) {
+        List<String> found = new ArrayList<>();
+        for (String name : names(database)) {
+            pause(name);
+            int before = found.size();
+            for (String candidate : words(name).keySet()) {
+                if (strategy.equals("exact") ? candidate.equals(word) : candidate.startsWith(word))
+                    found.add(name + " \"" + candidate + "\"\r\n");
+            }
+            if (database.equals("!") && found.size() > before)
+                break;
+        }
+        if (found.isEmpty()) {
+            out.print("552 no match\r\n");
+            return;
+        }
+        out.print("152 " + found.size() + " matches found\r\n");
+        found.forEach(out::print);
+        out.print(".\r\n250 ok\r\n");
+    }
+}
@@ -0,0 +1,147 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FanOutClientTest {
+
+    private static FakeDictServer server() throws Exception {
+        return new FakeDictServer()
+                .database("wn", Map.of("parrot", "a bird"))
+                .database("gcide", Map.of("parrot", "a bird that talks", "pear", "a fruit"))
+                .database("foldoc", Map.of("parser", "a program"))
+                .database("jargon", Map.of("parrot", "to repeat"));
+    }
+
+    @Test
+    public void testDefinitionsMergedInServerOrder() throws Exception {
+        try (FakeDictServer server = server()) {
+            // The first databases answer last, so they finish in the reverse of the order they are listed in
+            server.delay("wn", 300);
+            server.delay("gcide", 150);
+            FanOutClient client = new FanOutClient(new ConnectionPool("localhost", server.getPort(), 4));
+            try {
+                List<String> order = new ArrayList<>();
+                for (Definition definition : client.getDefinitions("parrot", new Database("*", "All")))
+                    order.add(definition.getDatabaseName());
+                assertEquals(List.of("wn", "gcide", "jargon"), order);
+
+                order.clear();
+                for (Definition definition : client.getDefinitions("parrot", new Database("!", "Any")))
+                    order.add(definition.getDatabaseName());
+                assertEquals(List.of("wn"), order);
+
+                long defines = server.getCommands().stream().filter(c -> c.startsWith("DEFINE")).count();
+                assertTrue(defines > 2, "lookups should be spread over the databases");
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testTimeoutLeavesLookupsToFinish() throws Exception {
+        // Four connections spread the lookups out; a single one pipelines all of them
+        for (int connections : new int[]{4, 1}) {
+            try (FakeDictServer server = server()) {
+                server.delay("wn", 600);
+                FanOutClient client = new FanOutClient(new ConnectionPool("localhost", server.getPort(), connections));
+                try {
+                    List<Definition> received = new ArrayList<>();
+                    long start = System.nanoTime();
+                    assertThrows(RequestTimeoutException.class, () -> client.getDefinitions("parrot",
+                            new Database("*", "All"), received::add, Duration.ofMillis(150)));
+                    assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+                    assertTrue(received.isEmpty());
+
+                    // The abandoned lookups finish in the background and leave their connections usable
+                    Thread.sleep(800);
+                    server.delay("wn", 0);
+                    assertEquals(3, client.getDefinitions("parrot", new Database("*", "All")).size());
+                    assertTrue(server.getAccepted() <= connections);
+                } finally {
+                    client.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharesPipelinedOnEachConnection() throws Exception {
+        try (FakeDictServer server = new FakeDictServer()) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String name = "db" + i;
+                server.database(name, i % 3 == 0 ? Map.of("parrot", "bird " + i) : Map.of("pear", "fruit " + i));
+                if (i % 3 == 0)
+                    expected.add(name);
+            }
+            FanOutClient client = new FanOutClient(new ConnectionPool("localhost", server.getPort(), 4));
+            try {
+                List<String> order = new ArrayList<>();
+                for (Definition definition : client.getDefinitions("parrot", new Database("*", "All")))
+                    order.add(definition.getDatabaseName());
+                assertEquals(expected, order);
+                // One request per database, none of them "*", on no more connections than the pool holds
+                assertEquals(40, server.getCommands().stream().filter(c -> c.startsWith("DEFINE db")).count());
+                assertFalse(server.getCommands().contains("DEFINE * parrot"));
+                assertTrue(server.getAccepted() <= 4);
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFirstMatchStopsSendingRequests() throws Exception {
+        try (FakeDictServer server = new FakeDictServer()) {
+            for (int i = 0; i < 40; i++) {
+                server.database("db" + i, Map.of("parrot", "bird " + i));
+                if (i > 0)
+                    server.delay("db" + i, 20); // later replies trickle in, leaving time to stop
+            }
+            FanOutClient client = new FanOutClient(new ConnectionPool("localhost", server.getPort(), 1));
+            try {
+                List<String> order = new ArrayList<>();
+                for (Definition definition : client.getDefinitions("parrot", new Database("!", "Any")))
+                    order.add(definition.getDatabaseName());
+                assertEquals(List.of("db0"), order);
+
+                // Requests already pipelined are answered, the rest are never sent
+                Thread.sleep(800);
+                long defines = server.getCommands().stream().filter(c -> c.startsWith("DEFINE")).count();
+                assertTrue(defines < 40, "DEFINE commands sent: " + defines);
+                assertEquals(1, client.getDefinitions("parrot", new Database("db39", "")).size());
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMatchSentAsOneRequest() throws Exception {
+        try (FakeDictServer server = server()) {
+            FanOutClient client = new FanOutClient(new ConnectionPool("localhost", server.getPort(), 4));
+            try {
+                MatchingStrategy prefix = new MatchingStrategy("prefix", "Prefix");
+                assertEquals(List.of("parrot", "pear", "parser"),
+                        new ArrayList<>(client.getMatchList("p", prefix, new Database("*", "All"))));
+                assertEquals(List.of("parrot"),
+                        new ArrayList<>(client.getMatchList("p", prefix, new Database("*", "All"), 1)));
+                assertEquals(2, server.getCommands().stream().filter(c -> c.startsWith("MATCH")).count());
+            } finally {
+                client.close();
+            }
+        }
+    }
+}
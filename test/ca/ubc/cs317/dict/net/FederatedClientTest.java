@@ -0,0 +1,163 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FederatedClientTest {
+
+    private static final MatchingStrategy PREFIX = new MatchingStrategy("prefix", "Match prefixes");
+
+    private static FederatedClient client(FakeDictServer... servers) {
+        List<ConnectionPool> pools = new ArrayList<>();
+        for (FakeDictServer server : servers)
+            pools.add(new ConnectionPool("localhost", server.getPort(), 2));
+        return new FederatedClient(pools);
+    }
+
+    private static List<String> databases(Iterable<Definition> definitions) {
+        List<String> names = new ArrayList<>();
+        for (Definition definition : definitions)
+            names.add(definition.getDatabaseName());
+        return names;
+    }
+
+    private static long defines(FakeDictServer server) {
+        return server.getCommands().stream().filter(c -> c.startsWith("DEFINE")).count();
+    }
+
+    @Test
+    public void testQualifiedDatabaseNames() throws Exception {
+        try (FakeDictServer first = new FakeDictServer().database("wn", Map.of("parrot", "a bird"))
+                .database("gcide", Map.of("parrot", "a bird that talks"));
+             FakeDictServer second = new FakeDictServer().database("wn", Map.of("parrot", "a bird"))
+                     .database("foldoc", Map.of("parser", "a program"))) {
+            String a = "@localhost:" + first.getPort();
+            String b = "@localhost:" + second.getPort();
+            FederatedClient client = client(first, second);
+            try {
+                assertEquals(List.of("wn" + a, "gcide" + a, "wn" + b, "foldoc" + b),
+                        new ArrayList<>(client.getDatabaseList().keySet()));
+
+                // A qualified name goes to its own server only, under the name that server knows
+                assertEquals(List.of("gcide" + a), databases(client.getDefinitions("parrot",
+                        new Database("gcide" + a, "GCIDE"))));
+                assertEquals(List.of("foldoc" + b), databases(client.getDefinitions("parser",
+                        new Database("foldoc" + b, "FOLDOC"))));
+                assertEquals(1, defines(first));
+                assertTrue(first.getCommands().contains("DEFINE gcide parrot"));
+                assertEquals(1, defines(second));
+
+                assertThrows(DictConnectionException.class,
+                        () -> client.getDefinitions("parrot", new Database("wn@nowhere", "WordNet")));
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testDefinitionsDeduplicatedByBody() throws Exception {
+        try (FakeDictServer first = new FakeDictServer().database("wn", Map.of("parrot", "a  bird   that talks"));
+             FakeDictServer second = new FakeDictServer().database("wn", Map.of("parrot", "a bird that talks"))
+                     .database("jargon", Map.of("parrot", "to repeat"))) {
+            FederatedClient client = client(first, second);
+            try {
+                // Both mirrors of wn answer, but only differ in whitespace
+                List<String> bodies = new ArrayList<>();
+                for (Definition definition : client.getDefinitions("parrot", new Database("*", "All")))
+                    bodies.add(String.join(" ", definition.getDefinition().trim().split("\\s+")));
+                bodies.sort(null);
+                assertEquals(2, bodies.size());
+                assertTrue(bodies.get(0).startsWith("a bird that talks"));
+                assertTrue(bodies.get(1).startsWith("to repeat"));
+                assertEquals(1, defines(first));
+                assertEquals(1, defines(second));
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFailingServerLeftOut() throws Exception {
+        FakeDictServer down = new FakeDictServer();
+        down.close();
+        try (FakeDictServer up = new FakeDictServer().database("wn", Map.of("parrot", "a bird", "park", "a garden"))) {
+            FederatedClient client = client(down, up);
+            try {
+                assertEquals(List.of("wn@localhost:" + up.getPort()),
+                        databases(client.getDefinitions("parrot", new Database("*", "All"))));
+                assertEquals(Set.of("parrot", "park"),
+                        client.getMatchList("par", PREFIX, new Database("*", "All"), 10));
+                assertEquals(List.of("wn@localhost:" + up.getPort()),
+                        new ArrayList<>(client.getDatabaseList().keySet()));
+            } finally {
+                client.close();
+            }
+
+            // A lookup only fails if every server it was sent to failed
+            FederatedClient alone = client(down);
+            try {
+                assertThrows(DictConnectionException.class,
+                        () -> alone.getDefinitions("parrot", new Database("*", "All")));
+                assertThrows(DictConnectionException.class,
+                        () -> alone.getMatchList("par", PREFIX, new Database("*", "All"), 10));
+            } finally {
+                alone.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFirstServerInConfiguredOrder() throws Exception {
+        try (FakeDictServer first = new FakeDictServer().database("wn", Map.of("parrot", "a bird"));
+             FakeDictServer second = new FakeDictServer().database("gcide",
+                     Map.of("parrot", "a bird that talks", "pear", "a fruit"))) {
+            // The first server answers last, but is still preferred
+            first.delay("wn", 300);
+            FederatedClient client = client(first, second);
+            try {
+                Database any = new Database("!", "Any");
+                assertEquals(List.of("wn@localhost:" + first.getPort()),
+                        databases(client.getDefinitions("parrot", any)));
+                assertEquals(Set.of("parrot"), client.getMatchList("parr", PREFIX, any, 10));
+
+                // Servers without any results are skipped
+                assertEquals(List.of("gcide@localhost:" + second.getPort()),
+                        databases(client.getDefinitions("pear", any)));
+                assertEquals(Set.of("pear"), client.getMatchList("pea", PREFIX, any, 10));
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMatchListReturnsOnceLimitReached() throws Exception {
+        try (FakeDictServer fast = new FakeDictServer().database("wn",
+                Map.of("parrot", "a bird", "park", "a garden", "parse", "to analyse"));
+             FakeDictServer slow = new FakeDictServer().database("wn", Map.of("parrots", "birds"))) {
+            slow.delay("wn", 2000);
+            FederatedClient client = client(fast, slow);
+            try {
+                long start = System.nanoTime();
+                Set<String> matches = client.getMatchList("par", PREFIX, new Database("*", "All"), 2);
+                assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+                assertEquals(2, matches.size());
+                assertTrue(Set.of("parrot", "park", "parse").containsAll(matches));
+            } finally {
+                client.close();
+            }
+        }
+    }
+}
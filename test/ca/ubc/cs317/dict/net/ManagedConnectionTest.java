@@ -0,0 +1,175 @@
+package ca.ubc.cs317.dict.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManagedConnectionTest {
+
+    /** A DICT server that answers the first SHOW STRAT only after a delay, and answers everything else at once. */
+    private static class StallingServer implements AutoCloseable {
+        private final ServerSocket server = new ServerSocket(0);
+        private final long stallMillis;
+        private final AtomicInteger stalls = new AtomicInteger();
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final AtomicInteger quits = new AtomicInteger();
+        private final AtomicInteger statuses = new AtomicInteger();
+        private final CountDownLatch aborted = new CountDownLatch(1);
+
+        StallingServer(long stallMillis) throws IOException {
+            this.stallMillis = stallMillis;
+            Thread thread = new Thread(this::accept);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void accept() {
+            try {
+                while (true) {
+                    Socket socket = server.accept();
+                    accepted.incrementAndGet();
+                    Thread thread = new Thread(() -> serve(socket));
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                out.print("220 fake <auth> <1@fake>\r\n");
+                out.flush();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.equals("QUIT")) {
+                        quits.incrementAndGet();
+                        out.print("221 bye\r\n");
+                        out.flush();
+                        return;
+                    } else if (line.equals("STATUS")) {
+                        statuses.incrementAndGet();
+                        out.print("210 ok\r\n");
+                    } else if (line.equals("SHOW DATABASES")) {
+                        out.print("110 1 databases present\r\nwn \"WordNet\"\r\n.\r\n250 ok\r\n");
+                    } else if (line.equals("SHOW STRAT")) {
+                        if (stalls.getAndIncrement() == 0 && !stall(socket, in))
+                            return;
+                        out.print("111 1 strategies present\r\nprefix \"Match prefixes\"\r\n.\r\n250 ok\r\n");
+                    } else {
+                        out.print("500 unknown command\r\n");
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Client went away
+            }
+        }
+
+        /** Waits for the stall to pass, noticing if the client closes the connection meanwhile. */
+        private boolean stall(Socket socket, BufferedReader in) throws IOException {
+            socket.setSoTimeout((int) stallMillis);
+            try {
+                if (in.read() < 0) {
+                    aborted.countDown();
+                    return false;
+                }
+            } catch (SocketTimeoutException e) {
+                // Stall over
+            }
+            socket.setSoTimeout(0);
+            return true;
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        void awaitConnections(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (accepted.get() < count && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testTimeoutDoesNotHoldUpOtherRequests() throws Exception {
+        try (StallingServer server = new StallingServer(600)) {
+            ManagedConnection connection = new ManagedConnection("localhost", server.getPort());
+            try {
+                server.awaitConnections(2); // the active session and its standby
+
+                long start = System.nanoTime();
+                assertThrows(RequestTimeoutException.class, () -> connection.getStrategyList(Duration.ofMillis(100)));
+                assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+
+                // Answered by the standby session while the first one is still waiting for its reply
+                start = System.nanoTime();
+                assertTrue(connection.getDatabaseList(Duration.ofSeconds(2)).containsKey("wn"));
+                assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+
+                // Once drained, the first session is kept as the new standby rather than closed and replaced
+                Thread.sleep(900);
+                assertEquals(0, server.quits.get());
+                assertEquals(2, server.accepted.get());
+                assertEquals(1, connection.getStrategyList(Duration.ofSeconds(2)).size());
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    public void testSessionClosedWhenDrainTakesTooLong() throws Exception {
+        try (StallingServer server = new StallingServer(5000)) {
+            ManagedConnection connection = new ManagedConnection("localhost", server.getPort());
+            try {
+                connection.setDrainBudget(Duration.ofMillis(100));
+                assertThrows(RequestTimeoutException.class, () -> connection.getStrategyList(Duration.ofMillis(100)));
+                assertTrue(server.aborted.await(2, TimeUnit.SECONDS));
+                assertTrue(connection.getDatabaseList(Duration.ofSeconds(2)).containsKey("wn"));
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    public void testKeepAliveSkipsSessionWithRequestInFlight() throws Exception {
+        try (StallingServer server = new StallingServer(800)) {
+            ManagedConnection connection = new ManagedConnection("localhost", server.getPort(), 100, 5000);
+            try {
+                server.awaitConnections(2);
+                assertEquals(1, connection.getStrategyList().size());
+
+                // The standby session was checked throughout, instead of the keepalive task waiting for the reply
+                assertTrue(server.statuses.get() >= 3);
+                assertEquals(2, server.accepted.get());
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplyBufferTest {
+
+    private static final Database WN = new Database("wn", "WordNet");
+    private static final MatchingStrategy PREFIX = new MatchingStrategy("prefix", "Match prefixes");
+
+    /** Random lines mixing ASCII, accented letters and characters outside the BMP, which take two chars each. */
+    private static List<String> randomLines(Random random, int count) {
+        String[] pieces = {"a", "Z", " ", "\u00e9", "\u4e2d", "\ud83d\udc26", "."};
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = random.nextInt(80); j > 0; j--)
+                line.append(pieces[random.nextInt(pieces.length)]);
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private static Set<Path> spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(f -> f.getFileName().toString().startsWith("dict-reply")).collect(Collectors.toSet());
+        }
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] chunk = new char[100];
+        for (int count; (count = reader.read(chunk, 0, chunk.length)) >= 0; )
+            text.append(chunk, 0, count);
+        return text.toString();
+    }
+
+    @Test
+    public void testTruncateKeepsTextUpToLimit() throws IOException {
+        ReplyBuffer buffer = new ReplyBuffer(10, ReplyOverflow.TRUNCATE);
+        buffer.appendLine("hello");
+        buffer.appendLine("world!");
+        buffer.appendLine("more");
+        ReplyText text = buffer.build();
+        assertEquals("hello\nworl", text.toString());
+        assertTrue(text.isTruncated());
+        assertFalse(text.isSpilled());
+    }
+
+    @Test
+    public void testSpilledTextEqualsInput() throws IOException {
+        Set<Path> before = spillFiles();
+        List<String> lines = randomLines(new Random(7), 300);
+        String expected = String.join("\n", lines);
+
+        ReplyBuffer buffer = new ReplyBuffer(100, ReplyOverflow.SPILL);
+        for (String line : lines)
+            buffer.appendLine(line);
+        ReplyText text = buffer.build();
+        assertTrue(text.isSpilled());
+        assertFalse(text.isTruncated());
+        // The file is deleted once built, and the text stays readable from the mapping
+        assertEquals(before, spillFiles());
+
+        assertEquals(expected.length(), text.length());
+        for (int i = 0; i < expected.length(); i++)
+            assertEquals(expected.charAt(i), text.charAt(i));
+        try (Reader reader = text.openReader()) {
+            assertEquals(expected, readAll(reader));
+        }
+        assertEquals(expected, text.toString());
+    }
+
+    @Test
+    public void testDiscardRemovesSpillFile() throws IOException {
+        Set<Path> before = spillFiles();
+        ReplyBuffer buffer = new ReplyBuffer(10, ReplyOverflow.SPILL);
+        buffer.appendLine("a line longer than the limit");
+        assertNotEquals(before, spillFiles());
+        buffer.discard();
+        assertEquals(before, spillFiles());
+    }
+
+    @Test
+    public void testOverflowingRepliesLeaveConnectionUsable() throws Exception {
+        StringBuilder info = new StringBuilder();
+        for (int i = 0; i < 20; i++)
+            info.append("line ").append(i).append(" of the database information\n");
+        try (FakeDictServer server = new FakeDictServer().database("wn", Map.of("parrot", "a bird"))
+                .info("wn", info.toString().trim())) {
+            DictionaryConnection connection = new DictionaryConnection("localhost", server.getPort());
+            try {
+                connection.setReplyMemoryLimit(100, ReplyOverflow.TRUNCATE);
+                ReplyText truncated = connection.getDatabaseInfoText(WN);
+                assertTrue(truncated.isTruncated());
+                assertEquals(100, truncated.length());
+                assertTrue(info.toString().startsWith(truncated.toString()));
+
+                // The rest of the reply was read, so the next command gets its own reply
+                assertEquals(Set.of("parrot"), connection.getMatchList("par", PREFIX, WN));
+
+                connection.setReplyMemoryLimit(100, ReplyOverflow.SPILL);
+                ReplyText spilled = connection.getDatabaseInfoText(WN);
+                assertTrue(spilled.isSpilled());
+                assertFalse(spilled.isTruncated());
+                assertTrue(spilled.toString().startsWith(info.toString().trim()));
+                assertEquals(Set.of("parrot"), connection.getMatchList("par", PREFIX, WN));
+            } finally {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    public void testDefinitionsShareMemoryLimit() throws Exception {
+        String body = "a bird with a curved beak, often kept as a pet.";
+        try (FakeDictServer server = new FakeDictServer().database("wn", Map.of("parrot", body))
+                .database("gcide", Map.of("parrot", body + " Some can talk."))) {
+            DictionaryConnection connection = new DictionaryConnection("localhost", server.getPort());
+            try {
+                connection.setReplyMemoryLimit(body.length() + 20, ReplyOverflow.TRUNCATE);
+                List<Definition> definitions = new ArrayList<>(connection.getDefinitions("parrot",
+                        new Database("*", "All")));
+                assertEquals(2, definitions.size());
+                assertFalse(definitions.get(0).isTruncated());
+                assertTrue(definitions.get(0).getDefinition().startsWith(body));
+
+                // The second body only gets what the first one left of the limit
+                assertTrue(definitions.get(1).isTruncated());
+                assertTrue(definitions.get(1).getDefinition().length() <= 20);
+
+                // Each reply starts with the whole limit again
+                Definition alone = connection.getDefinitions("parrot", new Database("gcide", "GCIDE"))
+                        .iterator().next();
+                assertFalse(alone.isTruncated());
+                assertEquals(Set.of("parrot"), connection.getMatchList("par", PREFIX, WN));
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Definition;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Measures the throughput of reading a large reply: splitting it into lines with a BufferedReader over an
+ * InputStreamReader, as connections used to, and with a {@link ReplyReader}; skipping it to the terminator; and
+ * normalizing line ends of the resulting definition body. Run with the compiled classes and tests on the class path:
+ *
+ * <pre>
+ * java -cp out:test-out ca.ubc.cs317.dict.net.ReplyReaderBenchmark [megabytes]
+ * </pre>
+ */
+public class ReplyReaderBenchmark {
+
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        byte[] reply = reply(megabytes * 1024 * 1024);
+        String body = new String(reply, StandardCharsets.UTF_8).replace("\r\n", "\n");
+        System.out.printf("Reply of %.1f MB, %d rounds each, best round reported%n", reply.length / 1e6, ROUNDS);
+
+        report("BufferedReader.readLine", reply.length, () -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(reply),
+                    StandardCharsets.UTF_8));
+            long chars = 0;
+            String line;
+            while ((line = reader.readLine()) != null)
+                chars += line.length();
+            return chars;
+        });
+        report("ReplyReader.readLine", reply.length, () -> {
+            ReplyReader reader = new ReplyReader(new ByteArrayInputStream(reply));
+            long chars = 0;
+            String line;
+            while ((line = reader.readLine()) != null)
+                chars += line.length();
+            return chars;
+        });
+        report("ReplyReader.skipText", reply.length, () -> {
+            ReplyReader reader = new ReplyReader(new ByteArrayInputStream(reply));
+            reader.skipText();
+            return reader.readLine().length();
+        });
+        report("regex line ends", reply.length, () -> body.replaceAll("[ \t\r]*\n", "\n").length());
+        report("Definition.setDefinition", reply.length, () -> {
+            Definition definition = new Definition("test", "wn");
+            definition.setDefinition(body);
+            return definition.getDefinition().length();
+        });
+    }
+
+    /** Builds a reply of dictionary-like lines, some with trailing spaces and non-ASCII text, ending in ".". */
+    private static byte[] reply(int size) {
+        Random random = new Random(1);
+        String[] words = {"parrot", "a", "tropical", "bird", "with", "{bright}", "plumage", "caf\u00e9", "n.", "--"};
+        StringBuilder text = new StringBuilder(size + 100);
+        while (text.length() < size) {
+            text.append("     ");
+            int count = 3 + random.nextInt(10);
+            for (int i = 0; i < count; i++)
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            if (random.nextInt(4) != 0)
+                text.setLength(text.length() - 1);
+            text.append("\r\n");
+        }
+        text.append(".\r\n250 ok\r\n");
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void report(String name, long bytes, Task task) throws IOException {
+        long best = Long.MAX_VALUE;
+        long check = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            check += task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-26s %8.1f MB/s  (%d)%n", name, bytes / (best / 1e9) / 1e6, check);
+    }
+
+    private interface Task {
+        long run() throws IOException;
+    }
+}
@@ -0,0 +1,130 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Definition;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplyReaderTest {
+
+    /** Hands out at most a few bytes per read, so lines and characters are split across buffer fills. */
+    private static InputStream trickle(byte[] bytes, int maxRead) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, maxRead));
+            }
+        };
+    }
+
+    private static String randomText(Random random, int length) {
+        String[] alphabet = {"a", "b", "c", " ", "\t", "\r", "\n", ".", "\u00e9", "\u20ac", "\ud83d\ude00"};
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length)
+            text.append(alphabet[random.nextInt(alphabet.length)]);
+        return text.toString();
+    }
+
+    @Test
+    public void testLinesMatchBufferedReader() throws IOException {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            // Lone carriage returns end lines for a BufferedReader but not in the protocol, so there are none
+            String text = randomText(random, random.nextInt(3000)).replace("\r", "")
+                    .replace("\n", round % 3 == 0 ? "\n" : "\r\n") + (round % 2 == 0 ? "\r\n" : "");
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            BufferedReader expected = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+                    StandardCharsets.UTF_8));
+            ReplyReader actual = new ReplyReader(trickle(bytes, 1 + random.nextInt(40)));
+            String line;
+            do {
+                line = expected.readLine();
+                assertEquals(line, actual.readLine());
+            } while (line != null);
+        }
+    }
+
+    @Test
+    public void testLongLinesAndCharacters() throws IOException {
+        String longLine = "x".repeat(100000) + "\ud83d\ude00";
+        byte[] bytes = (longLine + "\r\nnext\r\n").getBytes(StandardCharsets.UTF_8);
+        ReplyReader reader = new ReplyReader(trickle(bytes, 5000));
+        assertEquals(longLine, reader.readLine());
+        char[] chars = new char[3];
+        assertEquals(3, reader.read(chars, 0, 3));
+        assertEquals("nex", new String(chars));
+        assertEquals('t', reader.read());
+        assertEquals('\r', reader.read());
+        assertEquals('\n', reader.read());
+        assertEquals(-1, reader.read());
+        assertNull(reader.readLine());
+    }
+
+    @Test
+    public void testSkipText() throws IOException {
+        String text = "word1\r\n.word2\r\n..\r\n. \r\n.\r\n250 ok\r\n";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int maxRead = 1; maxRead <= bytes.length; maxRead++) {
+            ReplyReader reader = new ReplyReader(trickle(bytes, maxRead));
+            long[] skipped = reader.skipText();
+            assertArrayEquals(new long[]{text.indexOf("250"), 5}, skipped);
+            assertEquals("250 ok", reader.readLine());
+        }
+        ReplyReader truncated = new ReplyReader(new ByteArrayInputStream("word\r\n.x".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new long[]{8, 1}, truncated.skipText());
+        assertNull(truncated.readLine());
+    }
+
+    @Test
+    public void testBytesConsumedExcludeReadAhead() throws IOException {
+        byte[] bytes = "abc\r\n\u00e9t\u00e9\nword\r\n.\r\n250 ok\r\n".getBytes(StandardCharsets.UTF_8);
+        ReplyReader reader = new ReplyReader(new ByteArrayInputStream(bytes));
+        assertEquals(0, reader.getBytesConsumed());
+        assertEquals("abc", reader.readLine());
+        assertEquals(bytes.length, reader.getBytesReceived());
+        assertEquals(5, reader.getBytesConsumed());
+        assertEquals("\u00e9t\u00e9", reader.readLine());
+        assertEquals(11, reader.getBytesConsumed());
+        reader.skipText();
+        assertEquals(20, reader.getBytesConsumed());
+        assertEquals("250 ok", reader.readLine());
+        assertEquals(bytes.length, reader.getBytesConsumed());
+    }
+
+    @Test
+    public void testIndexOfLineFeed() {
+        Random random = new Random(7);
+        byte[] bytes = new byte[64];
+        for (int round = 0; round < 10000; round++) {
+            for (int i = 0; i < bytes.length; i++)
+                bytes[i] = (byte) (random.nextInt(8) == 0 ? '\n' : random.nextInt(8) == 0 ? 11 : random.nextInt(256));
+            int from = random.nextInt(bytes.length);
+            int to = from + random.nextInt(bytes.length - from + 1);
+            int expected = -1;
+            for (int i = from; i < to && expected < 0; i++) {
+                if (bytes[i] == '\n')
+                    expected = i;
+            }
+            assertEquals(expected, ReplyReader.indexOfLineFeed(bytes, from, to));
+        }
+    }
+
+    @Test
+    public void testDefinitionLineEndsMatchPattern() {
+        Random random = new Random(3);
+        for (int round = 0; round < 2000; round++) {
+            String text = randomText(random, random.nextInt(200));
+            Definition definition = new Definition("word", "wn");
+            definition.setDefinition(text);
+            assertEquals(text.replaceAll("[ \t\r]*\n", "\n"), definition.getDefinition());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ca.ubc.cs317.dict.ui;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.lang.reflect.InvocationTargetException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EdtMonitorTest {
+
+    @Test
+    public void testReportsBlockingCallSite() throws InterruptedException, InvocationTargetException {
+        EdtMonitor monitor = EdtMonitor.install(50, 5);
+        try {
+            SwingUtilities.invokeAndWait(() -> { });
+            SwingUtilities.invokeAndWait(EdtMonitorTest::blockFor300Millis);
+            // Quick events are not reported
+            for (int i = 0; i < 20; i++)
+                SwingUtilities.invokeAndWait(() -> { });
+            Thread.sleep(250);
+        } finally {
+            monitor.uninstall();
+        }
+
+        assertEquals(1, monitor.getStallCount());
+        assertTrue(monitor.getCallSites().get(0).contains("EdtMonitorTest.blockFor300Millis"),
+                monitor.report());
+        assertTrue(monitor.report().contains("probes"));
+    }
+
+    @Test
+    public void testModalLoopWaitingIsNotAStall() throws InterruptedException, InvocationTargetException {
+        EdtMonitor monitor = EdtMonitor.install(50, 5);
+        try {
+            // A modal dialog pumps events in a secondary loop inside the event that opened it; the loop is used
+            // directly, since a dialog can't be shown without a display
+            SwingUtilities.invokeAndWait(() -> {
+                SecondaryLoop loop = Toolkit.getDefaultToolkit().getSystemEventQueue().createSecondaryLoop();
+                new Thread(() -> {
+                    blockFor300Millis();
+                    loop.exit();
+                }).start();
+                loop.enter();
+            });
+            Thread.sleep(100);
+        } finally {
+            monitor.uninstall();
+        }
+
+        assertEquals(0, monitor.getStallCount(), monitor.report());
+    }
+
+    private static void blockFor300Millis() {
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}